@@ -0,0 +1,484 @@
+package com.tylerpackard.tools;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * A standalone benchmark of the Bucket's flood fill on a 3840x2160 image. It times the old fill, which queued four
+ * Points per pixel in a LinkedList and went through getRGB and setRGB, against the scanline fill that works on the
+ * pixel array, over a solid region, a checkerboard and a spiral. It also times drawing a line across the image. Both
+ * fills record their changes the same way a DrawEdit does, but without the repaint the old fill asked for on every
+ * pixel, so the old numbers are on the kind side. It doesn't need anything else from the editor, so it can be run on
+ * its own:
+ * <pre>
+ * javac -d out bench/com/tylerpackard/tools/FillBenchmark.java
+ * java -Xmx2g -cp out com.tylerpackard.tools.FillBenchmark
+ * </pre>
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ */
+public final class FillBenchmark {
+
+	/**
+	 * The width of the image, in pixels.
+	 */
+	private static final int WIDTH = 3840;
+
+	/**
+	 * The height of the image, in pixels.
+	 */
+	private static final int HEIGHT = 2160;
+
+	/**
+	 * The color of the region being filled.
+	 */
+	private static final int TARGET = 0xFFFFFFFF;
+
+	/**
+	 * The color of everything around the region.
+	 */
+	private static final int WALL = 0xFF000000;
+
+	/**
+	 * The color the region is filled with.
+	 */
+	private static final int FILL = 0xFFFF0000;
+
+	/**
+	 * How many untimed runs to do before timing each case.
+	 */
+	private static final int WARMUP = 3;
+
+	/**
+	 * How many timed runs to take the median of.
+	 */
+	private static final int RUNS = 7;
+
+
+	/**
+	 * The benchmark only has static methods.
+	 */
+	private FillBenchmark() {}
+
+
+	/**
+	 * Runs every case and prints the median time of each.
+	 *
+	 * @param args Ignored
+	 */
+	public static void main(String[] args) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		System.out.println(WIDTH + "x" + HEIGHT + ", median of " + RUNS + " runs");
+
+		String[] names = {"solid", "checkerboard", "spiral"};
+		int[][] patterns = {solid(), checkerboard(), spiral()};
+		for (int i = 0; i < names.length; i++) {
+			int[] pattern = patterns[i];
+			double before = time(() -> {
+				System.arraycopy(pattern, 0, pixels, 0, pixels.length);
+				return queueFill(image, 0, 0);
+			});
+			double after = time(() -> {
+				System.arraycopy(pattern, 0, pixels, 0, pixels.length);
+				return scanlineFill(image, 0, 0);
+			});
+			System.out.printf("fill %-13s before %9.1f ms   after %7.1f ms   %5.1fx%n", names[i], before, after,
+					before / after);
+		}
+
+		int[] blank = solid();
+		double line = time(() -> {
+			System.arraycopy(blank, 0, pixels, 0, pixels.length);
+			return line(image, 0, 0, WIDTH - 1, HEIGHT - 1);
+		});
+		System.out.printf("line corner to corner     %9.3f ms%n", line);
+	}
+
+	/**
+	 * Times a case, checking that every run changes the same number of pixels.
+	 *
+	 * @param run The case to run, which returns the number of pixels it changed
+	 * @return The median time of the timed runs, in milliseconds
+	 */
+	private static double time(Run run) {
+		int expected = run.run();
+		for (int i = 1; i < WARMUP; i++) {
+			check(run.run(), expected);
+		}
+
+		double[] times = new double[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			int changed = run.run();
+			times[i] = (System.nanoTime() - start) / 1e6;
+			check(changed, expected);
+		}
+		Arrays.sort(times);
+		return times[RUNS / 2];
+	}
+
+	/**
+	 * Makes sure a run changed as many pixels as the first one did.
+	 *
+	 * @param changed The number of pixels the run changed
+	 * @param expected The number of pixels the first run changed
+	 */
+	private static void check(int changed, int expected) {
+		if (changed != expected) {
+			throw new IllegalStateException("Changed " + changed + " pixels instead of " + expected);
+		}
+	}
+
+	/**
+	 * The old fill, from before the Bucket used scanlines.
+	 *
+	 * @param image The image to fill
+	 * @param x The X position of the clicked pixel
+	 * @param y The Y position of the clicked pixel
+	 * @return The number of pixels changed
+	 */
+	private static int queueFill(BufferedImage image, int x, int y) {
+		int imageWidth = image.getWidth();
+		int imageHeight = image.getHeight();
+		int targetRGB = image.getRGB(x, y);
+		Changes edit = new Changes(image);
+
+		LinkedList<Point> points = new LinkedList<>();
+		points.add(new Point(x, y));
+
+		while (!points.isEmpty()) {
+			Point p = points.remove();
+			if (p.x >= 0 && p.y >= 0 && p.x < imageWidth && p.y < imageHeight) {
+				if (targetRGB == image.getRGB(p.x, p.y)) {
+					edit.addChange(p.x, p.y, targetRGB, FILL);
+					points.add(new Point(p.x + 1, p.y));
+					points.add(new Point(p.x - 1, p.y));
+					points.add(new Point(p.x, p.y + 1));
+					points.add(new Point(p.x, p.y - 1));
+				}
+			}
+		}
+		return edit.size;
+	}
+
+	/**
+	 * The scanline fill the Bucket uses now.
+	 *
+	 * @param image The image to fill
+	 * @param x The X position of the clicked pixel
+	 * @param y The Y position of the clicked pixel
+	 * @return The number of pixels changed
+	 */
+	private static int scanlineFill(BufferedImage image, int x, int y) {
+		int imageWidth = image.getWidth();
+		int imageHeight = image.getHeight();
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int targetRGB = image.getRGB(x, y);
+		Changes edit = new Changes(image);
+
+		int[] seeds = new int[64];
+		int seedCount = 0;
+		seeds[seedCount++] = x;
+		seeds[seedCount++] = y;
+
+		while (seedCount > 0) {
+			int seedY = seeds[--seedCount];
+			int seedX = seeds[--seedCount];
+			int row = seedY * imageWidth;
+			if (pixels[row + seedX] != targetRGB) {
+				continue;
+			}
+
+			int left = seedX;
+			while (left > 0 && pixels[row + left - 1] == targetRGB) {
+				left--;
+			}
+			int right = seedX + 1;
+			while (right < imageWidth && pixels[row + right] == targetRGB) {
+				right++;
+			}
+
+			Arrays.fill(pixels, row + left, row + right, FILL);
+			edit.recordSpan(left, seedY, right - left, targetRGB, FILL);
+
+			for (int ny = seedY - 1; ny <= seedY + 1; ny += 2) {
+				if (ny < 0 || ny >= imageHeight) {
+					continue;
+				}
+				int neighbourRow = ny * imageWidth;
+				boolean inRun = false;
+				for (int nx = left; nx < right; nx++) {
+					if (pixels[neighbourRow + nx] == targetRGB) {
+						if (!inRun) {
+							if (seedCount + 2 > seeds.length) {
+								seeds = Arrays.copyOf(seeds, seeds.length * 2);
+							}
+							seeds[seedCount++] = nx;
+							seeds[seedCount++] = ny;
+							inRun = true;
+						}
+					} else {
+						inRun = false;
+					}
+				}
+			}
+		}
+		return edit.size;
+	}
+
+	/**
+	 * Draws a line the way the Pencil does, one addChange per Bresenham step.
+	 *
+	 * @param image The image to draw on
+	 * @param x The X position the line starts at
+	 * @param y The Y position the line starts at
+	 * @param x2 The X position the line ends at
+	 * @param y2 The Y position the line ends at
+	 * @return The number of pixels changed
+	 */
+	private static int line(BufferedImage image, int x, int y, int x2, int y2) {
+		Changes edit = new Changes(image);
+		int width = x2 - x;
+		int height = y2 - y;
+		int longest = Math.abs(width);
+		int shortest = Math.abs(height);
+		int dx1 = Integer.signum(width), dy1 = Integer.signum(height), dx2 = dx1, dy2 = 0;
+		if (longest <= shortest) {
+			longest = Math.abs(height);
+			shortest = Math.abs(width);
+			dy2 = dy1;
+			dx2 = 0;
+		}
+
+		int numerator = longest >> 1;
+		for (int i = 0; i <= longest; i++) {
+			edit.addChange(x, y, image.getRGB(x, y), FILL);
+			numerator += shortest;
+			if (numerator >= longest) {
+				numerator -= longest;
+				x += dx1;
+				y += dy1;
+			} else {
+				x += dx2;
+				y += dy2;
+			}
+		}
+		return edit.size;
+	}
+
+	/**
+	 * Returns an image that's one solid region.
+	 *
+	 * @return The pixels of the image
+	 */
+	private static int[] solid() {
+		int[] pattern = new int[WIDTH * HEIGHT];
+		Arrays.fill(pattern, TARGET);
+		return pattern;
+	}
+
+	/**
+	 * Returns a one pixel checkerboard where every other row is solid, so that it's all one region but every span in
+	 * the checkered rows is a single pixel long.
+	 *
+	 * @return The pixels of the image
+	 */
+	private static int[] checkerboard() {
+		int[] pattern = new int[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				pattern[y * WIDTH + x] = y % 2 == 0 || (x + y / 2) % 2 == 0 ? TARGET : WALL;
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Returns a one pixel wide corridor that spirals in from the top left corner, with one pixel walls between each
+	 * ring.
+	 *
+	 * @return The pixels of the image
+	 */
+	private static int[] spiral() {
+		int[] pattern = new int[WIDTH * HEIGHT];
+		Arrays.fill(pattern, WALL);
+		int left = 0, top = 0, right = WIDTH - 1, bottom = HEIGHT - 1;
+		while (left <= right && top <= bottom) {
+			for (int x = left; x <= right; x++) {
+				pattern[top * WIDTH + x] = TARGET;
+			}
+			for (int y = top; y <= bottom; y++) {
+				pattern[y * WIDTH + right] = TARGET;
+			}
+			if (top + 2 > bottom || left + 2 > right) {
+				break;
+			}
+			for (int x = right; x >= left; x--) {
+				pattern[bottom * WIDTH + x] = TARGET;
+			}
+			for (int y = bottom; y >= top + 2; y--) {
+				pattern[y * WIDTH + left] = TARGET;
+			}
+			pattern[(top + 2) * WIDTH + left + 1] = TARGET;
+			left += 2;
+			top += 2;
+			right -= 2;
+			bottom -= 2;
+		}
+		return pattern;
+	}
+
+
+	/**
+	 * A case to time.
+	 */
+	private interface Run {
+
+		/**
+		 * Runs the case once.
+		 *
+		 * @return The number of pixels changed
+		 */
+		int run();
+	}
+
+	/**
+	 * Records changes the same way a DrawEdit does, in parallel arrays with an open-addressing hash table so that each
+	 * pixel is only recorded once.
+	 */
+	private static final class Changes {
+
+		/**
+		 * The image being changed.
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * The packed coordinates of each change.
+		 */
+		private int[] coords = new int[16];
+
+		/**
+		 * The previous RGB value of each change.
+		 */
+		private int[] prevRGBs = new int[16];
+
+		/**
+		 * The new RGB value of each change.
+		 */
+		private int[] newRGBs = new int[16];
+
+		/**
+		 * The number of changes recorded.
+		 */
+		private int size = 0;
+
+		/**
+		 * The hash table of the changes, holding the index of each change plus one.
+		 */
+		private int[] table = new int[32];
+
+
+		/**
+		 * Creates an empty set of changes to an image.
+		 *
+		 * @param image The image being changed
+		 */
+		Changes(BufferedImage image) {
+			this.image = image;
+		}
+
+
+		/**
+		 * Records a change and writes it to the image, like DrawEdit.addChange minus the repaint.
+		 *
+		 * @param x The X position of the change
+		 * @param y The Y position of the change
+		 * @param prevRGB The previous RGB value at the location
+		 * @param newRGB The RGB value to replace it with
+		 */
+		void addChange(int x, int y, int prevRGB, int newRGB) {
+			if (record(x, y, prevRGB, newRGB)) {
+				image.setRGB(x, y, newRGB);
+			}
+		}
+
+		/**
+		 * Records a span that has already been written to the image, like DrawEdit.recordSpan.
+		 *
+		 * @param x The X position of the first pixel in the span
+		 * @param y The Y position of the span
+		 * @param length The number of pixels in the span
+		 * @param prevRGB The previous RGB value of the span
+		 * @param newRGB The RGB value the span was replaced with
+		 */
+		void recordSpan(int x, int y, int length, int prevRGB, int newRGB) {
+			for (int i = 0; i < length; i++) {
+				record(x + i, y, prevRGB, newRGB);
+			}
+		}
+
+		/**
+		 * Stores a change if the pixel hasn't already been changed.
+		 *
+		 * @param x The X position of the change
+		 * @param y The Y position of the change
+		 * @param prevRGB The previous RGB value at the location
+		 * @param newRGB The RGB value to replace it with
+		 * @return Whether or not the change was new
+		 */
+		private boolean record(int x, int y, int prevRGB, int newRGB) {
+			int coord = (y << 16) | (x & 0xFFFF);
+			int slot = slotOf(coord);
+			if (table[slot] != 0) {
+				return false;
+			}
+			if (size == coords.length) {
+				grow();
+				slot = slotOf(coord);
+			}
+			coords[size] = coord;
+			prevRGBs[size] = prevRGB;
+			newRGBs[size] = newRGB;
+			size++;
+			table[slot] = size;
+			return true;
+		}
+
+		/**
+		 * Returns the slot a coordinate is in, or the empty slot it would go in.
+		 *
+		 * @param coord The packed coordinate
+		 * @return The slot of the coordinate
+		 */
+		private int slotOf(int coord) {
+			int mask = table.length - 1;
+			int h = coord * 0x9E3779B9;
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (table[slot] != 0 && coords[table[slot] - 1] != coord) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Doubles the capacity of the arrays and rebuilds the hash table to match.
+		 */
+		private void grow() {
+			int capacity = coords.length * 2;
+			coords = Arrays.copyOf(coords, capacity);
+			prevRGBs = Arrays.copyOf(prevRGBs, capacity);
+			newRGBs = Arrays.copyOf(newRGBs, capacity);
+			table = new int[capacity * 2];
+			for (int i = 0; i < size; i++) {
+				table[slotOf(coords[i])] = i + 1;
+			}
+		}
+	}
+}
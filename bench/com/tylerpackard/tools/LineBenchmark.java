@@ -0,0 +1,225 @@
+package com.tylerpackard.tools;
+
+import java.util.Arrays;
+
+/**
+ * A standalone benchmark of the LineRasterizer against the per-step loop Tool.drawLine used before it, on a 3840x2160
+ * image. The cases are a short stroke, a long diagonal across the whole image, a stroke that starts and ends far
+ * outside the image but crosses it, and one that never touches it. Both send their spans to a sink that just counts
+ * the pixels, which also checks that they draw the same line. It only needs the rasterizer from the editor:
+ * <pre>
+ * javac -d out src/com/tylerpackard/tools/LineRasterizer.java bench/com/tylerpackard/tools/LineBenchmark.java
+ * java -cp out com.tylerpackard.tools.LineBenchmark
+ * </pre>
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ */
+public final class LineBenchmark {
+
+	/**
+	 * The width of the image, in pixels.
+	 */
+	private static final int WIDTH = 3840;
+
+	/**
+	 * The height of the image, in pixels.
+	 */
+	private static final int HEIGHT = 2160;
+
+	/**
+	 * How many times each line is drawn per timed run.
+	 */
+	private static final int LINES = 2000;
+
+	/**
+	 * How many untimed runs to do before timing each case.
+	 */
+	private static final int WARMUP = 20;
+
+	/**
+	 * How many timed runs to take the median of.
+	 */
+	private static final int RUNS = 15;
+
+
+	/**
+	 * The benchmark only has static methods.
+	 */
+	private LineBenchmark() {}
+
+
+	/**
+	 * Runs every case and prints the median time of each.
+	 *
+	 * @param args Ignored
+	 */
+	public static void main(String[] args) {
+		System.out.println(WIDTH + "x" + HEIGHT + ", median time per line of " + RUNS + " runs");
+		String[] names = {"short stroke", "long diagonal", "off-canvas crossing", "off-canvas miss"};
+		int[][] lines = {
+				{100, 100, 140, 120},
+				{0, 0, WIDTH - 1, HEIGHT - 1},
+				{1920 - 60000, 1080 - 20000, 1920 + 60000, 1080 + 20000},
+				{-50000, -3000, 50000, -2000}
+		};
+
+		for (int i = 0; i < names.length; i++) {
+			int[] l = lines[i];
+			Counter before = new Counter();
+			Counter after = new Counter();
+			double beforeTime = time(() -> walk(l[0], l[1], l[2], l[3], WIDTH, HEIGHT, before));
+			double afterTime = time(() -> LineRasterizer.rasterize(l[0], l[1], l[2], l[3], WIDTH, HEIGHT, after));
+			if (before.pixels != after.pixels) {
+				throw new IllegalStateException(names[i] + " drew " + after.pixels + " pixels instead of "
+						+ before.pixels);
+			}
+			System.out.printf("%-20s before %10.1f ns   after %8.1f ns   %7.1fx%n", names[i], beforeTime, afterTime,
+					beforeTime / afterTime);
+		}
+	}
+
+	/**
+	 * Times a case.
+	 *
+	 * @param line Draws the line once
+	 * @return The median time of the timed runs, in nanoseconds per line
+	 */
+	private static double time(Runnable line) {
+		for (int i = 0; i < WARMUP; i++) {
+			for (int j = 0; j < LINES; j++) {
+				line.run();
+			}
+		}
+
+		double[] times = new double[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			for (int j = 0; j < LINES; j++) {
+				line.run();
+			}
+			times[i] = (double) (System.nanoTime() - start) / LINES;
+		}
+		Arrays.sort(times);
+		return times[RUNS / 2];
+	}
+
+	/**
+	 * The loop Tool.drawLine used before the LineRasterizer, which walks every step of the line and checks each one
+	 * against the image.
+	 *
+	 * @param x The X position the line starts at
+	 * @param y The Y position the line starts at
+	 * @param x2 The X position the line ends at
+	 * @param y2 The Y position the line ends at
+	 * @param imageWidth The width of the image
+	 * @param imageHeight The height of the image
+	 * @param sink The sink to send the spans to
+	 */
+	private static void walk(int x, int y, int x2, int y2, int imageWidth, int imageHeight,
+							 LineRasterizer.SpanSink sink) {
+		int width = x2 - x;
+		int height = y2 - y;
+		int longest = Math.abs(width);
+		int shortest = Math.abs(height);
+		int dx1 = 0, dy1 = 0, dx2 = 0, dy2 = 0;
+		boolean wasIn = false;
+		int spanStart = 0, spanEnd = 0, spanY = -1;
+
+		if (width < 0) {
+			dx1 = -1;
+			dx2 = -1;
+		} else if (width > 0) {
+			dx1 = 1;
+			dx2 = 1;
+		}
+
+		if (height < 0) {
+			dy1 = -1;
+		} else if (height > 0) {
+			dy1 = 1;
+		}
+
+		if (longest <= shortest) {
+			longest = Math.abs(height);
+			shortest = Math.abs(width);
+			if (height < 0) {
+				dy2 = -1;
+			} else if (height > 0) {
+				dy2 = 1;
+			}
+			dx2 = 0;
+		}
+
+		int numerator = longest >> 1;
+		for (int i = 0; i <= longest; i++) {
+			boolean in = x >= 0 && x < imageWidth && y >= 0 && y < imageHeight;
+			if (in || wasIn) {
+				int px = x, py = y;
+				if (x < 0) {
+					px = 0;
+				} else if (x >= imageWidth) {
+					px = imageWidth - 1;
+				} else if (y < 0) {
+					py = 0;
+				} else if (y >= imageHeight) {
+					py = imageHeight - 1;
+				}
+
+				if (py == spanY && px == spanEnd) {
+					spanEnd++;
+				} else if (py == spanY && px == spanStart - 1) {
+					spanStart--;
+				} else {
+					if (spanY >= 0) {
+						sink.span(spanStart, spanY, spanEnd - spanStart);
+					}
+					spanStart = px;
+					spanEnd = px + 1;
+					spanY = py;
+				}
+			}
+			wasIn = in;
+
+			numerator += shortest;
+			if (numerator >= longest) {
+				numerator -= longest;
+				x += dx1;
+				y += dy1;
+			} else {
+				x += dx2;
+				y += dy2;
+			}
+		}
+
+		if (spanY >= 0) {
+			sink.span(spanStart, spanY, spanEnd - spanStart);
+		}
+	}
+
+
+	/**
+	 * A sink that counts the pixels it's sent.
+	 */
+	private static final class Counter implements LineRasterizer.SpanSink {
+
+		/**
+		 * The number of pixels sent so far.
+		 */
+		private long pixels = 0;
+
+
+		/**
+		 * Counts the pixels in a span.
+		 *
+		 * @param x The X position of the leftmost pixel
+		 * @param y The Y position of the span
+		 * @param length The number of pixels in the span
+		 */
+		@Override
+		public void span(int x, int y, int length) {
+			pixels += length;
+		}
+	}
+}
@@ -2,8 +2,11 @@ package com.tylerpackard;
 
 import com.tylerpackard.ui.Window;
 
+import javax.swing.*;
+
 /**
- * The class that starts and runs the program. It contains the Window, which controls its own subsystems.
+ * The class that starts the program. It creates the Window on the event dispatch thread, and from then on everything
+ * happens in response to events, so the program sits idle until the user does something.
  *
  * @author Tyler Packard
  * @version 0.0.1 alpha
@@ -16,41 +19,27 @@ public class Main implements Runnable{
 
 
 	/**
-	 * The method that starts the Main runnable and sets the Mac Menubar name.
+	 * The method that queues the Main runnable on the event dispatch thread and sets the Mac Menubar name. It also asks
+	 * for the XRender pipeline on Linux, so the Canvas's back buffer can stay in video memory, unless it's been turned
+	 * off on the command line.
 	 *
 	 * @param args unused
 	 */
 	public static void main(String[] args) {
 		System.setProperty("apple.laf.useScreenMenuBar", "true");
 		System.setProperty("com.apple.mrj.application.apple.menu.about.name", "Pixel Editor");
-		new Thread(new Main()).start();
+		if (System.getProperty("sun.java2d.xrender") == null) {
+			System.setProperty("sun.java2d.xrender", "true");
+		}
+		SwingUtilities.invokeLater(new Main());
 	}
 
 	/**
-	 * The run method of the Main runnable. It creates a new window starts the looped section of the code, pausing for
-	 * 10 milliseconds between each call of loop().
-	 *
-	 * @see #loop()
+	 * The run method of the Main runnable. It creates a new window, which repositions and repaints itself when it's
+	 * told to by Swing.
 	 */
 	@Override
 	public void run() {
 		window = new Window(720, 480);
-
-		while (true) {
-			loop();
-
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
-	/**
-	 * Updates the window every 10 milliseconds
-	 */
-	void loop() {
-		window.update();
 	}
 }
\ No newline at end of file
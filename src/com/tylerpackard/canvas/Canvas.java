@@ -1,5 +1,8 @@
 package com.tylerpackard.canvas;
 
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.image.TiledImage;
+import com.tylerpackard.metrics.PerformanceStats;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 import com.tylerpackard.ui.Updatable;
 import com.tylerpackard.ui.Window;
@@ -8,24 +11,46 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
 
 /**
  * The Canvas holds the image that's being edited, although the image is stored in a child ImageHolder. The Canvas
- * allows the ImageHolder to be scrolled in any direction if it is larger than the Canvas.
+ * allows the image to be panned in any direction if it is larger than the Canvas, with the scroll wheel or by dragging
+ * while holding the space bar. The tool's mouse icon and
+ * the hover box are drawn by a CursorOverlay laid over the ImageHolder, so moving the mouse only repaints the areas
+ * the cursor moved from and to. The view of the image is drawn by a RenderWorker on its own thread, so the event
+ * thread only has to copy finished frames onto the screen. A PerformanceHud can be shown in the corner to keep an eye on
+ * how fast all of this is.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 9
  * @since 0.0.1
  * @see ImageHolder
  */
 public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 
+	/**
+	 * The lowest zoom level, where the image is drawn at 1/64 of its size. Every level below 1 halves the size.
+	 */
+	public static final int MIN_ZOOM = 1 - MipPyramid.MAX_LEVEL;
+
+	/**
+	 * The highest zoom level, where each pixel of the image covers 16 by 16 pixels on screen.
+	 */
+	public static final int MAX_ZOOM = 5;
+
 	/**
 	 * The ImageHolder contained by the Canvas. The Canvas can get and set the image contained by the ImageHolder and
 	 * can scroll it.
 	 */
 	private final ImageHolder imageHolder;
 
+	/**
+	 * The layer over the ImageHolder that draws the mouse icon and hover box.
+	 */
+	private final CursorOverlay cursorOverlay = new CursorOverlay();
+
 	/**
 	 * The Window which contains the Canvas.
 	 */
@@ -65,7 +90,7 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 	private int imageHeight;
 
 	/**
-	 * Stores whether or not the mouse is inside the ImageHolder
+	 * Stores whether or not the mouse is over the image, so the tool's mouse icon should be drawn
 	 */
 	private boolean mouseInBounds;
 
@@ -84,6 +109,32 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 	 */
 	private int lastScrollY = 0;
 
+	/**
+	 * The part of a pixel the scroll wheel has moved by that hasn't been panned yet, so that slow, smooth scrolling
+	 * still adds up.
+	 */
+	private double wheelRemainder = 0;
+
+	/**
+	 * The area of the image that has changed since the ImageHolder last repainted, in image coordinates.
+	 */
+	private final DirtyRegion dirtyRegion = new DirtyRegion();
+
+	/**
+	 * Where the time taken to paint, draw frames, use tools and get input onto the screen is recorded.
+	 */
+	private final PerformanceStats stats;
+
+	/**
+	 * The panel in the corner that shows the stats when it's turned on.
+	 */
+	private final PerformanceHud performanceHud;
+
+	/**
+	 * Draws the view of the image off of the event thread.
+	 */
+	private final RenderWorker renderWorker;
+
 
 	/**
 	 * Sets the parent Window and ToolChooser to get tools from, and sets itself up.
@@ -99,16 +150,25 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		setBackground(new Color(0x55555A));
 		addMouseWheelListener(this);
 		setFocusable(true);
+		stats = parent.getPerformanceStats();
+		performanceHud = new PerformanceHud(stats);
 		imageHolder = new ImageHolder(this);
+		renderWorker = new RenderWorker(stats, area -> imageHolder.repaint(area));
+		add(performanceHud);
+		add(cursorOverlay);
 		add(imageHolder);
 		setImagePos();
 	}
 
 	/**
-	 * Unused method
+	 * The CursorOverlay overlaps the ImageHolder, so Swing has to paint them together whenever either changes.
+	 *
+	 * @return False, since the children overlap
 	 */
 	@Override
-	public void update() {}
+	public boolean isOptimizedDrawingEnabled() {
+		return false;
+	}
 
 	/**
 	 * Unused method
@@ -123,17 +183,55 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 	 *
 	 * @return The image being edited
 	 */
-	public BufferedImage getImage() {
+	public PixelStore getImage() {
 		return imageHolder.getImage();
 	}
 
 	/**
-	 * Sets the image being edited
+	 * Shows the PerformanceHud if it's hidden, or hides it if it's showing.
+	 */
+	public void toggleHud() {
+		performanceHud.toggle();
+	}
+
+	/**
+	 * Sets the image being edited. The image it replaces is released once the RenderWorker is done drawing it, so
+	 * whatever it holds on to, like a MappedImage's scratch file, is let go of with it.
 	 *
 	 * @param image The new image to be edited
 	 */
-	public void setImage(BufferedImage image) {
+	public void setImage(PixelStore image) {
+		PixelStore old = imageHolder.getImage();
 		imageHolder.setImage(image);
+		if (old != null && old != image) {
+			renderWorker.retire(old);
+		}
+	}
+
+	/**
+	 * Marks an area of the image as changed so that it's repainted at the end of the current input event. Changes made
+	 * during a single event are merged into one repaint.
+	 *
+	 * @param x The X position of the changed area in the image
+	 * @param y The Y position of the changed area in the image
+	 * @param width The width of the changed area
+	 * @param height The height of the changed area
+	 */
+	public void markDirty(int x, int y, int width, int height) {
+		dirtyRegion.add(x, y, width, height);
+	}
+
+	/**
+	 * Marks an area of the image as changed and repaints it immediately, along with anything else that's been marked.
+	 * Used for changes that don't come from the mouse, such as undoing and redoing.
+	 *
+	 * @param bounds The changed area of the image, or null if nothing changed
+	 */
+	public void repaintImage(Rectangle bounds) {
+		if (bounds != null) {
+			dirtyRegion.add(bounds);
+		}
+		imageHolder.repaintDamage();
 	}
 
 	/**
@@ -151,6 +249,15 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		}
 	}
 
+	/**
+	 * Zooms in or out by the given number of levels, stopping at the highest or lowest zoom level.
+	 *
+	 * @param levels The number of levels to zoom in by, which is negative to zoom out
+	 */
+	public void zoomBy(int levels) {
+		setZoom(Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, imageHolder.zoomFactor + levels)));
+	}
+
 	public void switchZoom() {
 		setZoom(lastZoom);
 		scrollX = lastScrollX;
@@ -179,37 +286,53 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 	}
 
 	/**
-	 * Occurs when the user scrolls inside the Canvas. It repositions the image holder is it hasn't been scrolled out
-	 * of bounds and is larger than the canvas in the axis being scrolled.
+	 * Pans the image by the given amount in each axis it's larger than the Canvas in, stopping once its edge reaches
+	 * the edge of the Canvas.
+	 *
+	 * @param dx How far to move the image to the right
+	 * @param dy How far to move the image down
+	 */
+	public void panBy(int dx, int dy) {
+		int newScrollX = scrollX;
+		int newScrollY = scrollY;
+		if (imageWidth > getWidth() && dx != 0) {
+			newScrollX = Math.max(getWidth() / 2 - imageWidth / 2, Math.min(imageWidth / 2 - getWidth() / 2, scrollX + dx));
+		}
+		if (imageHeight > getHeight() && dy != 0) {
+			newScrollY = Math.max(getHeight() / 2 - imageHeight / 2, Math.min(imageHeight / 2 - getHeight() / 2, scrollY + dy));
+		}
+		if (newScrollX != scrollX || newScrollY != scrollY) {
+			scrollX = newScrollX;
+			scrollY = newScrollY;
+			setImagePos();
+		}
+	}
+
+	/**
+	 * Turns panning with the mouse on or off, which the Window does while the space bar is held.
+	 *
+	 * @param panning Whether or not dragging should pan the image
+	 */
+	public void setPanning(boolean panning) {
+		imageHolder.setPanning(panning);
+	}
+
+	/**
+	 * Occurs when the user scrolls inside the Canvas. It pans the image vertically, or horizontally if shift is held.
+	 * Fractions of a pixel are saved up for the next scroll, so trackpads that scroll in tiny steps still pan smoothly.
 	 *
 	 * @param e The scrolling event
 	 * @see MouseWheelEvent
 	 */
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e) {
-		int amount = (int)Math.round(e.getPreciseWheelRotation() * 2);
+		double amount = e.getPreciseWheelRotation() * 2 + wheelRemainder;
+		int pixels = (int) amount;
+		wheelRemainder = amount - pixels;
 		if (e.isShiftDown()) { // Horizontal scroll
-			if (imageWidth > getWidth()) {
-				if (imageHolder.getXPos() - amount > 0 && amount < 0) {
-					scrollX = imageWidth / 2 - getWidth() / 2;
-				} else if (imageHolder.getXPos() - amount <= getWidth() - imageWidth && amount > 0) {
-					scrollX = getWidth() / 2 - imageWidth /2;
-				} else {
-					scrollX -= amount;
-				}
-				setImagePos();
-			}
+			panBy(-pixels, 0);
 		} else { // Vertical scroll
-			if (imageHeight > getHeight()) {
-				if (imageHolder.getYPos() - amount > 0) {
-					scrollY = imageHeight / 2 - getHeight() / 2;
-				} else if (imageHolder.getYPos() - amount <= getHeight() - imageHeight) {
-					scrollY = getHeight() / 2 - imageHeight / 2;
-				} else {
-					scrollY -= amount;
-				}
-				setImagePos();
-			}
+			panBy(0, -pixels);
 		}
 	}
 
@@ -219,11 +342,16 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 	//////////////////
 
 	/**
-	 * The section that holds the image and allows it to be edited. It can be scrolled around and zoomed in by the
-	 * Canvas, and communicates with it to change the image being edited.
+	 * The section that holds the image and allows it to be edited. It covers the whole Canvas and draws the image at
+	 * the scrolled position inside itself, by way of a back buffer that keeps what's on screen between frames. Panning
+	 * shifts the back buffer by the distance panned and only draws the strips that were uncovered, so the cost of a pan
+	 * depends on how far it moved rather than on the size of the Canvas. The drawing is done by the RenderWorker, and
+	 * the ImageHolder just tells it what to draw and copies what it finished onto the screen buffer, a VolatileImage
+	 * that lives in video memory where the platform allows it. Frames where only the cursor moved are just a copy of
+	 * the screen buffer.
 	 *
 	 * @author Tyler Packard
-	 * @version 1
+	 * @version 5
 	 * @since 0.0.1
 	 * @see Canvas
 	 */
@@ -237,30 +365,31 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		/**
 		 * The image that is being held and edited
 		 */
-		private BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+		private PixelStore image = new TiledImage(100, 100);
 
 		/**
-		 * The Graphics object of the image being held
+		 * The amount to be zoomed in, unscaled. Levels below 1 are zoomed out.
 		 */
-		private Graphics imageG = image.getGraphics();
+		private int zoomFactor = 1;
 
 		/**
-		 * The amount to be zoomed in, unscaled
+		 * The amount to zoom in, scaled exponentially, or 1 when zoomed out
 		 */
-		private int zoomFactor = 1;
+		private int scaledZoom = 1;
 
 		/**
-		 * The amount to zoom in, scaled exponentially
+		 * The level of the MipPyramid to draw when zoomed out, or 0 when not. Each screen pixel covers 2^mipLevel
+		 * image pixels across and down.
 		 */
-		private int scaledZoom = 1;
+		private int mipLevel = 0;
 
 		/**
-		 * The previous X position of the mouse while pressed
+		 * The previous X position of the mouse while pressed, relative to the image
 		 */
 		private int mouseX;
 
 		/**
-		 * The previous Y position of the mouse while pressed
+		 * The previous Y position of the mouse while pressed, relative to the image
 		 */
 		private int mouseY;
 
@@ -275,18 +404,91 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		private int hoverY;
 
 		/**
-		 * The X position of the ImageHolder in the Canvas
+		 * The X position of the image in the ImageHolder
 		 */
 		private int xPos;
 
 		/**
-		 * The Y position of the ImageHolder in the Canvas
+		 * The Y position of the image in the ImageHolder
 		 */
 		private int yPos;
 
+		/**
+		 * The points the mouse has been dragged through since the tool was last given them, as X and Y pairs relative
+		 * to the image. The first point is where the mouse was before these drags.
+		 */
+		private int[] dragPoints = new int[64];
+
+		/**
+		 * The number of points waiting in dragPoints.
+		 */
+		private int dragCount = 0;
+
+		/**
+		 * When the oldest waiting drag happened, or 0 if there are none.
+		 */
+		private long oldestDragWhen = 0;
+
+		/**
+		 * When the oldest drag that has been drawn but not yet sent to the RenderWorker happened, or 0 if there isn't
+		 * one.
+		 */
+		private long unpaintedWhen = 0;
+
+		/**
+		 * Whether or not a call to flushDrags() has been queued on the event thread.
+		 */
+		private boolean flushQueued = false;
+
+		/**
+		 * Whether or not the mouse is inside the ImageHolder, whether or not it's over the image.
+		 */
+		private boolean mouseInside = false;
+
+		/**
+		 * Whether or not the space bar is held down, so that dragging pans instead of using the tool.
+		 */
+		private boolean panning = false;
+
+		/**
+		 * Whether or not the mouse was pressed while panning, so that its drags pan the image.
+		 */
+		private boolean panDrag = false;
+
+		/**
+		 * Whether or not the mouse was pressed over the image, so that its drags go to the tool.
+		 */
+		private boolean toolDrag = false;
 
 		/**
-		 * Adds mouse listeners and makes the cursor invisible when it's inside itself.
+		 * What's on screen, kept between frames so that only what the RenderWorker changed has to be copied. It's at
+		 * the scale of the display, so it's twice the size of the ImageHolder on a retina display.
+		 */
+		private VolatileImage screenBuffer;
+
+		/**
+		 * How many device pixels there are per pixel of the ImageHolder, as of the last paint.
+		 */
+		private int bufferScale = 1;
+
+		/**
+		 * Whether or not the next frame needs to be drawn in full, such as after zooming.
+		 */
+		private boolean redrawAll = true;
+
+		/**
+		 * Whether or not the image has been replaced since the last frame was asked for.
+		 */
+		private boolean imageReplaced = false;
+
+		/**
+		 * The invisible cursor shown over the image, where the tool draws its own mouse icon instead.
+		 */
+		private final Cursor blankCursor = Toolkit.getDefaultToolkit().createCustomCursor(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), new Point(0, 0), "blank cursor");
+
+
+		/**
+		 * Adds mouse listeners.
 		 *
 		 * @param parent The Canvas containing the ImageHolder
 		 */
@@ -294,20 +496,18 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 			this.parent = parent;
 			addMouseListener(this);
 			addMouseMotionListener(this);
-			setCursor(Toolkit.getDefaultToolkit().createCustomCursor(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), new Point(0, 0), "blank cursor"));
+			setOpaque(true);
 		}
 
 
 		/**
-		 * Sets the image being held to the given one and disposes the old Graphics and replaces them with the new
-		 * image's Graphics. It also resets the zoom level to one.
+		 * Sets the image being held to the given one and resets the zoom level to one.
 		 *
 		 * @param image The new image to be held
 		 */
-		public void setImage(BufferedImage image) {
-			imageG.dispose();
+		public void setImage(PixelStore image) {
 			this.image = image;
-			imageG = this.image.getGraphics();
+			imageReplaced = true;
 			setZoom(1);
 		}
 
@@ -316,18 +516,10 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		 *
 		 * @return The image being held
 		 */
-		public BufferedImage getImage() {
+		public PixelStore getImage() {
 			return image;
 		}
 
-		public int getXPos() {
-			return xPos;
-		}
-
-		public int getYPos() {
-			return yPos;
-		}
-
 		/**
 		 * Sets the zoom level to the current one, forcing the ImageHolder to make sure the image is in a legal
 		 * position and to reposition itself.
@@ -339,92 +531,129 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		/**
 		 * Zooms in or out as specified and repositions the image and itself.
 		 *
-		 * @param zoomFactor How much to be zoomed in
+		 * @param zoomFactor How much to be zoomed in, from MIN_ZOOM to MAX_ZOOM
 		 */
 		public void setZoom(int zoomFactor) {
 			this.zoomFactor = zoomFactor;
-			scaledZoom = (int)Math.pow(2, zoomFactor - 1);
-
-			imageWidth = image.getWidth() * (int)Math.pow(2, zoomFactor - 1);
-			imageHeight = image.getHeight() * (int)Math.pow(2, zoomFactor - 1);
+			if (zoomFactor >= 1) {
+				scaledZoom = 1 << (zoomFactor - 1);
+				mipLevel = 0;
+				imageWidth = image.getWidth() * scaledZoom;
+				imageHeight = image.getHeight() * scaledZoom;
+			} else {
+				scaledZoom = 1;
+				mipLevel = 1 - zoomFactor;
+				imageWidth = ((image.getWidth() - 1) >> mipLevel) + 1;
+				imageHeight = ((image.getHeight() - 1) >> mipLevel) + 1;
+			}
 
 			// Keep the scroll in-bounds
-			if (imageWidth <= getWidth()) {
+			if (imageWidth <= parent.getWidth()) {
 				scrollX = 0;
-			} else if (xPos <= getWidth() - imageWidth) {
-				scrollX = getWidth() / 2 - imageWidth /2;
+			} else if (xPos <= parent.getWidth() - imageWidth) {
+				scrollX = parent.getWidth() / 2 - imageWidth /2;
 			}
-			if (imageHeight <= getHeight()) {
+			if (imageHeight <= parent.getHeight()) {
 				scrollY = 0;
-			} else if (yPos <= getHeight() - imageHeight) {
-				scrollY = getHeight() / 2 - imageHeight /2;
+			} else if (yPos <= parent.getHeight() - imageHeight) {
+				scrollY = parent.getHeight() / 2 - imageHeight /2;
 			}
 
+			redrawAll = true;
 			setPos();
 		}
 
 		/**
-		 * Repositions itself and repaints.
+		 * Moves the image to where it's been scrolled to, and asks the RenderWorker for a new frame if it moved. The
+		 * RenderWorker shifts the last frame by how far the image moved and only draws the strips that were uncovered.
 		 */
 		public void setPos() {
-			xPos = parent.getWidth() / 2 - imageWidth / 2 + scrollX;
-			yPos = parent.getHeight() / 2 - imageHeight / 2 + scrollY;
+			int newX = parent.getWidth() / 2 - imageWidth / 2 + scrollX;
+			int newY = parent.getHeight() / 2 - imageHeight / 2 + scrollY;
+			boolean moved = newX != xPos || newY != yPos;
+			xPos = newX;
+			yPos = newY;
 			reposition();
-			repaint();
+			if (moved || redrawAll) {
+				requestFrame(null);
+			}
+			updateHover();
 		}
 
 		/**
-		 * Repaints the parent Canvas in addition to repainting itself.
+		 * Asks the RenderWorker for a frame of the image as it is now, which is repainted once it's finished.
+		 *
+		 * @param dirty The area of the image that has changed since the last frame was asked for, or null
 		 */
-		@Override
-		public void repaint() {
-			parent.repaint();
+		private void requestFrame(Rectangle dirty) {
+			RenderWorker.View view = new RenderWorker.View(image, getWidth(), getHeight(), bufferScale, xPos, yPos,
+					scaledZoom, mipLevel, imageWidth, imageHeight, parent.getBackground());
+			renderWorker.submit(view, dirty, redrawAll, imageReplaced, unpaintedWhen);
+			redrawAll = false;
+			imageReplaced = false;
+			unpaintedWhen = 0;
+		}
+
+		/**
+		 * Sends the dirty area of the image to the RenderWorker to be drawn, and then repaints the cursor if it has
+		 * moved.
+		 */
+		void repaintDamage() {
+			Rectangle dirty = dirtyRegion.getBounds();
+			if (dirty != null) {
+				stats.getDirtyArea().record((long) dirty.width * dirty.height);
+				requestFrame(dirty);
+				dirtyRegion.clear();
+			}
+			cursorOverlay.moveCursor();
 		}
 
 		/**
-		 * Draws the image, the background, and the mouse icon if in bounds.
+		 * Copies the RenderWorker's latest frame onto the screen buffer and the screen buffer onto the screen. If the
+		 * screen buffer's contents are lost while being copied, the whole frame is copied again. Nothing is drawn here,
+		 * so a slow frame never holds up the event thread.
 		 *
 		 * @param g The Graphics object to paint with
 		 */
 		@Override
 		public void paint(Graphics g) {
-			super.paint(g);
-
-			/* DRAW BACKGROUND */
-			g.setColor(new Color(0xCCCCD2));
-			g.fillRect(0, 0, getWidth(), getHeight());
-
-			int squareSize = 8;
-			g.setColor(Color.WHITE);
-			for (int x = 0; x < imageWidth; x += squareSize * 2) {
-				for (int y = 0; y < imageHeight; y += squareSize * 2) {
-					g.fillRect(x, y, squareSize, squareSize);
-					g.fillRect(x + squareSize, y + squareSize, squareSize, squareSize);
-				}
+			GraphicsConfiguration config = getGraphicsConfiguration();
+			if (config == null) {
+				return;
+			}
+			long start = System.nanoTime();
+			int scale = Boolean.TRUE.equals(parent.parent.hasRetina) ? 2 : 1;
+			if (scale != bufferScale) {
+				bufferScale = scale;
+				redrawAll = true;
+				requestFrame(null);
 			}
 
-			g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
-
-			if (mouseInBounds) {
-				if (zoomFactor > 1) {
-					drawHover(g);
+			boolean lost = false;
+			do {
+				screenBuffer = renderWorker.present(screenBuffer, config, lost);
+				if (screenBuffer == null) {
+					g.setColor(parent.getBackground());
+					g.fillRect(0, 0, getWidth(), getHeight());
+					break;
 				}
-				toolChooser.getSelectedTool().drawMouse(g, hoverX, hoverY);
-			}
+				g.drawImage(screenBuffer, 0, 0, screenBuffer.getWidth() / scale, screenBuffer.getHeight() / scale, null);
+				lost = screenBuffer.contentsLost();
+			} while (lost);
+			stats.getPaintTime().record((System.nanoTime() - start) / 1000);
 		}
 
 		/**
-		 * Draws the bounds around the pixel being hovered over
+		 * Turns panning with the mouse on or off. A drag that has already started carries on as it was until the mouse
+		 * is released.
 		 *
-		 * @param g The Graphics object to paint with
+		 * @param panning Whether or not dragging should pan the image
 		 */
-		void drawHover(Graphics g) {
-			Graphics2D g2d = (Graphics2D) g;
-			g2d.setColor(Color.WHITE);
-			g2d.drawRect(hoverX - (hoverX % scaledZoom), hoverY - (hoverY % scaledZoom), scaledZoom, scaledZoom);
-			g2d.setColor(Color.BLACK);
-			g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[]{3, 5}, 0));
-			g2d.drawRect(hoverX - (hoverX % scaledZoom), hoverY - (hoverY % scaledZoom), scaledZoom, scaledZoom);
+		void setPanning(boolean panning) {
+			if (this.panning != panning) {
+				this.panning = panning;
+				updateHover();
+			}
 		}
 
 		/**
@@ -438,39 +667,60 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		}
 
 		/**
-		 * Draws on the image when clicked by sending the event to the ToolChooser's current tool.
+		 * Starts panning if the space bar is held, or draws on the image by sending the event to the ToolChooser's
+		 * current tool if the mouse is over the image.
 		 *
 		 * @param e The pressing event
-		 * @see com.tylerpackard.tools.Tool#clicked(MouseEvent, java.awt.image.BufferedImage, int, boolean)
+		 * @see com.tylerpackard.tools.Tool#clicked(MouseEvent, PixelStore, int)
 		 */
 		@Override
 		public void mousePressed(MouseEvent e) {
-			mouseX = e.getX();
-			mouseY = e.getY();
-			toolChooser.getSelectedTool().clicked(e, image, scaledZoom);
+			flushDrags();
 			parent.parent.requestFocus(parent);
-			repaint();
+			hoverX = e.getX();
+			hoverY = e.getY();
+			if (panning) {
+				panDrag = true;
+			} else if (isOverImage(e.getX(), e.getY())) {
+				toolDrag = true;
+				mouseX = e.getX() - xPos;
+				mouseY = e.getY() - yPos;
+				long start = System.nanoTime();
+				toolChooser.getSelectedTool().clicked(toImageScale(e), image, scaledZoom);
+				stats.getToolTime().record((System.nanoTime() - start) / 1000);
+			}
+			repaintDamage();
 		}
 
 		/**
-		 * Notifies the ImageHolder that a new edit should be made when the mouse is released.
+		 * Draws any drags that are still waiting and then seals the edit that was just made, since it won't be drawn
+		 * on anymore.
 		 *
 		 * @param e The releasing event
+		 * @see com.tylerpackard.edits.EditManager#seal()
 		 */
 		@Override
 		public void mouseReleased(MouseEvent e) {
-
+			flushDrags();
+			if (toolDrag) {
+				parent.parent.getEditManager().seal();
+			}
+			toolDrag = false;
+			panDrag = false;
+			updateHover();
 		}
 
 		/**
-		 * Tells the ImageHolder to draw the mouse icon when the mouse is inside itself
+		 * Tells the ImageHolder to draw the mouse icon when the mouse is over the image
 		 *
 		 * @param e The entering event
 		 */
 		@Override
 		public void mouseEntered(MouseEvent e) {
-			mouseInBounds = true;
-			repaint();
+			mouseInside = true;
+			hoverX = e.getX();
+			hoverY = e.getY();
+			updateHover();
 		}
 
 		/**
@@ -480,24 +730,99 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		 */
 		@Override
 		public void mouseExited(MouseEvent e) {
-			mouseInBounds = false;
-			repaint();
+			mouseInside = false;
+			updateHover();
 		}
 
 		/**
-		 * Draws on the image when dragged by sending the event to the ToolChooser's current tool.
+		 * Pans by how far the mouse moved if the drag started while panning. Otherwise, adds the point dragged to to
+		 * the waiting drag path. The path is handed to the tool once the events that are already queued have been
+		 * handled, so a fast mouse costs one tool call and one repaint per batch instead of one per event, without
+		 * dropping any of the points.
 		 *
 		 * @param e The dragging event
-		 * @see com.tylerpackard.tools.Tool#dragged(MouseEvent, int, int, BufferedImage, int)
+		 * @see #flushDrags()
 		 */
 		@Override
 		public void mouseDragged(MouseEvent e) {
-			toolChooser.getSelectedTool().dragged(e, mouseX, mouseY, image, scaledZoom);
-			mouseX = e.getX();
-			mouseY = e.getY();
+			int lastX = hoverX;
+			int lastY = hoverY;
 			hoverX = e.getX();
 			hoverY = e.getY();
-			repaint();
+			if (panDrag) {
+				panBy(hoverX - lastX, hoverY - lastY);
+				return;
+			}
+			if (!toolDrag) {
+				updateHover();
+				return;
+			}
+			updateCursor();
+
+			if (dragCount == 0) {
+				addDragPoint(mouseX, mouseY);
+				oldestDragWhen = e.getWhen();
+			}
+			addDragPoint(e.getX() - xPos, e.getY() - yPos);
+
+			if (!flushQueued) {
+				flushQueued = true;
+				SwingUtilities.invokeLater(this::flushDrags);
+			}
+		}
+
+		/**
+		 * Adds a point to the end of the waiting drag path.
+		 *
+		 * @param x The X position of the point
+		 * @param y The Y position of the point
+		 */
+		private void addDragPoint(int x, int y) {
+			if (2 * dragCount + 2 > dragPoints.length) {
+				dragPoints = Arrays.copyOf(dragPoints, dragPoints.length * 2);
+			}
+			dragPoints[2 * dragCount] = x;
+			dragPoints[2 * dragCount + 1] = y;
+			dragCount++;
+		}
+
+		/**
+		 * Returns the given mouse event with its position moved to be relative to the image, and scaled up to where it
+		 * lands in the image when zoomed out, so the tools can treat it the same as one at 100%.
+		 *
+		 * @param e The mouse event
+		 * @return The event relative to the image
+		 */
+		private MouseEvent toImageScale(MouseEvent e) {
+			return new MouseEvent(this, e.getID(), e.getWhen(), e.getModifiersEx(), (e.getX() - xPos) << mipLevel,
+					(e.getY() - yPos) << mipLevel, e.getClickCount(), e.isPopupTrigger(), e.getButton());
+		}
+
+		/**
+		 * Sends the waiting drag path to the ToolChooser's current tool and repaints everything it changed at once.
+		 *
+		 * @see com.tylerpackard.tools.Tool#dragged(int[], int, PixelStore, int)
+		 */
+		private void flushDrags() {
+			flushQueued = false;
+			if (dragCount == 0) {
+				return;
+			}
+
+			mouseX = dragPoints[2 * dragCount - 2];
+			mouseY = dragPoints[2 * dragCount - 1];
+			for (int i = 0; i < 2 * dragCount; i++) {
+				dragPoints[i] <<= mipLevel;
+			}
+			long start = System.nanoTime();
+			toolChooser.getSelectedTool().dragged(dragPoints, dragCount, image, scaledZoom);
+			stats.getToolTime().record((System.nanoTime() - start) / 1000);
+			dragCount = 0;
+			if (unpaintedWhen == 0) {
+				unpaintedWhen = oldestDragWhen;
+			}
+			oldestDragWhen = 0;
+			repaintDamage();
 		}
 
 		/**
@@ -509,23 +834,53 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 		public void mouseMoved(MouseEvent e) {
 			hoverX = e.getX();
 			hoverY = e.getY();
-			repaint();
+			updateHover();
 		}
 
 		/**
-		 * Unused, called by the parent Canvas' parent Window
+		 * Works out whether the tool's mouse icon should be drawn and repaints it if it moved.
 		 */
-		@Override
-		public void update() {
+		private void updateHover() {
+			updateCursor();
+			repaintDamage();
+		}
+
+		/**
+		 * Works out whether the tool's mouse icon should be drawn and shows the cursor that goes with it. The system
+		 * cursor is hidden over the image, where the tool draws its own, and becomes a move cursor while panning.
+		 */
+		private void updateCursor() {
+			mouseInBounds = mouseInside && !panning && !panDrag && isOverImage(hoverX, hoverY);
+			Cursor cursor = null;
+			if (panning || panDrag) {
+				cursor = Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR);
+			} else if (mouseInBounds) {
+				cursor = blankCursor;
+			}
+			if (cursor != getCursor()) {
+				setCursor(cursor);
+				cursorOverlay.setCursor(cursor);
+			}
+		}
 
+		/**
+		 * Returns whether or not a point in the ImageHolder is over the image.
+		 *
+		 * @param x The X position of the point
+		 * @param y The Y position of the point
+		 * @return Whether or not the point is over the image
+		 */
+		private boolean isOverImage(int x, int y) {
+			return x >= xPos && y >= yPos && x < xPos + imageWidth && y < yPos + imageHeight;
 		}
 
 		/**
-		 * Repositions the ImageHolder inside the parent Canvas
+		 * Makes the ImageHolder fill the parent Canvas
 		 */
 		@Override
 		public void reposition() {
-			setBounds(xPos, yPos, imageWidth, imageHeight);
+			setBounds(0, 0, parent.getWidth(), parent.getHeight());
+			cursorOverlay.setBounds(0, 0, parent.getWidth(), parent.getHeight());
 		}
 
 		/**
@@ -536,4 +891,113 @@ public class Canvas extends JPanel implements Updatable, MouseWheelListener {
 
 		}
 	}
+
+	/**
+	 * The CursorOverlay is a see-through layer over the ImageHolder that draws the current tool's mouse icon and, when
+	 * zoomed in, the box around the pixel being hovered over. It has no mouse listeners of its own, so mouse events
+	 * go straight through it to the ImageHolder.
+	 *
+	 * @author Tyler Packard
+	 * @version 2
+	 * @since 0.0.1
+	 * @see ImageHolder
+	 */
+	private class CursorOverlay extends JComponent {
+
+		/**
+		 * The dashed stroke of the hover box, made once instead of on every frame.
+		 */
+		private final Stroke hoverStroke = new BasicStroke(1, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[]{3, 5}, 0);
+
+		/**
+		 * The area covered by the mouse icon and hover box the last time they were repainted, or null if they weren't
+		 * drawn.
+		 */
+		private Rectangle cursorBounds;
+
+
+		/**
+		 * Makes the overlay see-through.
+		 */
+		CursorOverlay() {
+			setOpaque(false);
+		}
+
+
+		/**
+		 * Repaints the area the cursor was last drawn in and the area it will be drawn in next, if it has moved.
+		 */
+		void moveCursor() {
+			Rectangle bounds = mouseInBounds ? getCursorBounds() : null;
+			if (bounds == null ? cursorBounds == null : bounds.equals(cursorBounds)) {
+				return;
+			}
+			if (cursorBounds != null) {
+				repaint(cursorBounds);
+			}
+			if (bounds != null) {
+				repaint(bounds);
+			}
+			cursorBounds = bounds;
+		}
+
+		/**
+		 * Returns the area covered by the mouse icon and hover box at the current hover position.
+		 *
+		 * @return The area covered by the cursor, in the overlay's coordinates
+		 */
+		private Rectangle getCursorBounds() {
+			int hoverX = imageHolder.hoverX - imageHolder.xPos;
+			int hoverY = imageHolder.hoverY - imageHolder.yPos;
+			int zoom = imageHolder.scaledZoom;
+			Rectangle bounds = toolChooser.getSelectedTool().getMouseBounds(hoverX, hoverY);
+			if (imageHolder.zoomFactor > 1) {
+				bounds.add(new Rectangle(hoverX - (hoverX % zoom), hoverY - (hoverY % zoom), zoom + 1, zoom + 1));
+			}
+			bounds.translate(imageHolder.xPos, imageHolder.yPos);
+			return bounds;
+		}
+
+		/**
+		 * Draws the hover box and the mouse icon if the mouse is over the image. They're drawn relative to the image,
+		 * the same as the tools see the mouse.
+		 *
+		 * @param g The Graphics object to paint with
+		 */
+		@Override
+		public void paint(Graphics g) {
+			if (mouseInBounds) {
+				Graphics imageGraphics = g.create();
+				imageGraphics.translate(imageHolder.xPos, imageHolder.yPos);
+				int hoverX = imageHolder.hoverX - imageHolder.xPos;
+				int hoverY = imageHolder.hoverY - imageHolder.yPos;
+				if (imageHolder.zoomFactor > 1) {
+					drawHover(imageGraphics, hoverX, hoverY);
+				}
+				toolChooser.getSelectedTool().drawMouse(imageGraphics, hoverX, hoverY);
+				imageGraphics.dispose();
+			}
+		}
+
+		/**
+		 * Draws the bounds around the pixel being hovered over
+		 *
+		 * @param g The Graphics object to paint with, relative to the image
+		 * @param hoverX The X position of the mouse relative to the image
+		 * @param hoverY The Y position of the mouse relative to the image
+		 */
+		void drawHover(Graphics g, int hoverX, int hoverY) {
+			Graphics2D g2d = (Graphics2D) g;
+			int zoom = imageHolder.scaledZoom;
+			int x = hoverX - (hoverX % zoom);
+			int y = hoverY - (hoverY % zoom);
+			Stroke stroke = g2d.getStroke();
+			g2d.setColor(Color.WHITE);
+			g2d.drawRect(x, y, zoom, zoom);
+			g2d.setColor(Color.BLACK);
+			g2d.setStroke(hoverStroke);
+			g2d.drawRect(x, y, zoom, zoom);
+			g2d.setStroke(stroke);
+		}
+	}
 }
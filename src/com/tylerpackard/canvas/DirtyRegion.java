@@ -0,0 +1,101 @@
+package com.tylerpackard.canvas;
+
+import java.awt.*;
+
+/**
+ * A DirtyRegion collects the bounds of everything that has changed since it was last cleared, merging them into a
+ * single bounding rectangle so that a whole batch of changes can be repainted at once.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ */
+class DirtyRegion {
+
+	/**
+	 * The left edge of the region, inclusive.
+	 */
+	private int minX;
+
+	/**
+	 * The top edge of the region, inclusive.
+	 */
+	private int minY;
+
+	/**
+	 * The right edge of the region, exclusive.
+	 */
+	private int maxX;
+
+	/**
+	 * The bottom edge of the region, exclusive.
+	 */
+	private int maxY;
+
+	/**
+	 * Whether or not nothing has been added since the region was last cleared.
+	 */
+	private boolean empty = true;
+
+
+	/**
+	 * Grows the region to include the given rectangle. Empty rectangles are ignored.
+	 *
+	 * @param x The X position of the rectangle
+	 * @param y The Y position of the rectangle
+	 * @param width The width of the rectangle
+	 * @param height The height of the rectangle
+	 */
+	public void add(int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		if (empty) {
+			minX = x;
+			minY = y;
+			maxX = x + width;
+			maxY = y + height;
+			empty = false;
+		} else {
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x + width);
+			maxY = Math.max(maxY, y + height);
+		}
+	}
+
+	/**
+	 * Grows the region to include the given rectangle.
+	 *
+	 * @param rect The rectangle to include
+	 */
+	public void add(Rectangle rect) {
+		add(rect.x, rect.y, rect.width, rect.height);
+	}
+
+	/**
+	 * @return Whether or not nothing has been added since the region was last cleared
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * Returns the region as a rectangle, or null if it's empty.
+	 *
+	 * @return The bounds of the region
+	 */
+	public Rectangle getBounds() {
+		if (empty) {
+			return null;
+		}
+		return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Empties the region.
+	 */
+	public void clear() {
+		empty = true;
+	}
+}
@@ -0,0 +1,396 @@
+package com.tylerpackard.canvas;
+
+import com.tylerpackard.image.PixelStore;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A MipPyramid holds smaller copies of the image for drawing it zoomed out. Level 1 is half the size of the image,
+ * level 2 is half the size of level 1, and so on, with each pixel the average of the two by two block of pixels below
+ * it. Levels are never kept whole: they're cut into square tiles of {@link #TILE_SIZE} pixels, and a tile is only made
+ * when it's drawn, from the four tiles below it (or straight from the image, at level 1). Like the ZoomCache, the
+ * least recently drawn tiles are dropped once the pyramid goes over its memory budget, so even an image far bigger
+ * than the heap can be zoomed out on. When part of the image changes, the tiles above it are marked stale and only
+ * that part of them is recomputed the next time they're drawn, so an edit costs about as many pixels as it changed.
+ * It's only used by whichever thread is drawing a frame.
+ *
+ * @author Tyler Packard
+ * @version 2
+ * @since 0.0.1
+ * @see RenderWorker
+ */
+class MipPyramid {
+
+	/**
+	 * The smallest level that can be made, which is 1/64 of the size of the image.
+	 */
+	static final int MAX_LEVEL = 6;
+
+	/**
+	 * The width and height of each tile, in that level's pixels.
+	 */
+	static final int TILE_SIZE = 256;
+
+	/**
+	 * The default memory budget of the pyramid, in megabytes. Can be changed with the pixeleditor.mipCacheMB property.
+	 */
+	static final int DEFAULT_BUDGET_MB = Integer.getInteger("pixeleditor.mipCacheMB", 64);
+
+	/**
+	 * The tiles that have been made, in order from least to most recently used, keyed by level, column and row.
+	 *
+	 * @see #key(int, int, int)
+	 */
+	private final LinkedHashMap<Long, MipTile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+
+	/**
+	 * The most bytes the tiles may take up.
+	 */
+	private final long budget;
+
+	/**
+	 * The bytes taken up by the tiles.
+	 */
+	private long bytes = 0;
+
+	/**
+	 * The top row of pixels below a row being made, reused between rows.
+	 */
+	private final int[] top = new int[TILE_SIZE * 2];
+
+	/**
+	 * The bottom row of pixels below a row being made, reused between rows.
+	 */
+	private final int[] bottom = new int[TILE_SIZE * 2];
+
+	/**
+	 * A row of a tile being made, reused between rows.
+	 */
+	private final int[] out = new int[TILE_SIZE];
+
+	/**
+	 * Part of a row read out of a tile, reused between rows.
+	 */
+	private final int[] part = new int[TILE_SIZE];
+
+
+	/**
+	 * Creates a new pyramid with no tiles made yet and the default budget.
+	 */
+	MipPyramid() {
+		this(DEFAULT_BUDGET_MB * 1024L * 1024L);
+	}
+
+	/**
+	 * Creates a new pyramid with no tiles made yet.
+	 *
+	 * @param budget The most bytes the tiles may take up
+	 */
+	MipPyramid(long budget) {
+		this.budget = budget;
+	}
+
+
+	/**
+	 * Draws part of a level of the pyramid, making any tiles under it that haven't been made yet and recomputing the
+	 * stale parts of the rest. The area is in that level's pixels, so the image pixel (x, y) is under the level pixel
+	 * (x >> level, y >> level).
+	 *
+	 * @param g The Graphics to paint with, in the level's pixels
+	 * @param image The image the pyramid is built from
+	 * @param area The area to draw, in the level's pixels
+	 * @param level The level to draw, from 1 to MAX_LEVEL
+	 */
+	void draw(Graphics g, PixelStore image, Rectangle area, int level) {
+		int x2 = Math.min(area.x + area.width, levelSize(image.getWidth(), level));
+		int y2 = Math.min(area.y + area.height, levelSize(image.getHeight(), level));
+		for (int row = Math.max(0, area.y) / TILE_SIZE; row * TILE_SIZE < y2; row++) {
+			for (int col = Math.max(0, area.x) / TILE_SIZE; col * TILE_SIZE < x2; col++) {
+				MipTile tile = getTile(image, level, col, row);
+				if (tile.image != null) {
+					g.drawImage(tile.image, col * TILE_SIZE, row * TILE_SIZE, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the part of every tile, at any level, above the given area of the image as stale.
+	 *
+	 * @param area The area of the image that changed, in image pixels
+	 */
+	void invalidate(Rectangle area) {
+		if (area.isEmpty() || tiles.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<Long, MipTile> entry : tiles.entrySet()) {
+			long key = entry.getKey();
+			int level = (int) (key >>> 48);
+			int col = (int) (key >>> 24) & 0xFFFFFF;
+			int row = (int) key & 0xFFFFFF;
+			int x1 = Math.max(area.x >> level, col * TILE_SIZE);
+			int y1 = Math.max(area.y >> level, row * TILE_SIZE);
+			int x2 = Math.min(((area.x + area.width - 1) >> level) + 1, (col + 1) * TILE_SIZE);
+			int y2 = Math.min(((area.y + area.height - 1) >> level) + 1, (row + 1) * TILE_SIZE);
+			if (x1 < x2 && y1 < y2) {
+				entry.getValue().markStale(new Rectangle(x1 - col * TILE_SIZE, y1 - row * TILE_SIZE, x2 - x1, y2 - y1));
+			}
+		}
+	}
+
+	/**
+	 * Drops every tile, for when the image is replaced.
+	 */
+	void clear() {
+		tiles.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns a tile, making it if it hasn't been made or recomputing its stale part if it has.
+	 *
+	 * @param image The image the pyramid is built from
+	 * @param level The level of the tile
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @return The tile, which is up to date with the image
+	 */
+	private MipTile getTile(PixelStore image, int level, int col, int row) {
+		long key = key(level, col, row);
+		MipTile tile = tiles.get(key);
+		if (tile == null) {
+			tile = new MipTile();
+			fill(image, level, col, row, tile, new Rectangle(0, 0, TILE_SIZE, TILE_SIZE));
+			add(key, tile);
+		} else if (tile.stale != null) {
+			// Taken out while it's recomputed, so making the tiles below it can't drop it from under us
+			tiles.remove(key);
+			bytes -= sizeOf(tile);
+			Rectangle stale = tile.stale;
+			tile.stale = null;
+			fill(image, level, col, row, tile, stale);
+			add(key, tile);
+		}
+		return tile;
+	}
+
+	/**
+	 * Computes part of a tile from the level below it. The tiles below are fetched first, so the reused row arrays are
+	 * free again by the time this uses them.
+	 *
+	 * @param image The image the pyramid is built from
+	 * @param level The level of the tile
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @param tile The tile to compute into
+	 * @param region The part of the tile to compute, relative to the tile
+	 */
+	private void fill(PixelStore image, int level, int col, int row, MipTile tile, Rectangle region) {
+		int levelWidth = levelSize(image.getWidth(), level);
+		int levelHeight = levelSize(image.getHeight(), level);
+		int x1 = col * TILE_SIZE + Math.max(0, region.x);
+		int y1 = row * TILE_SIZE + Math.max(0, region.y);
+		int x2 = Math.min(col * TILE_SIZE + region.x + region.width, Math.min((col + 1) * TILE_SIZE, levelWidth));
+		int y2 = Math.min(row * TILE_SIZE + region.y + region.height, Math.min((row + 1) * TILE_SIZE, levelHeight));
+		int belowWidth = levelSize(image.getWidth(), level - 1);
+		int belowHeight = levelSize(image.getHeight(), level - 1);
+		int sx = x1 * 2;
+		int length = Math.min(belowWidth, x2 * 2) - sx;
+		if (y1 >= y2 || length <= 0) {
+			return;
+		}
+
+		// The two by two block of tiles below this one, or as much of it as is under the region
+		MipTile[][] below = null;
+		int belowCol = sx / TILE_SIZE;
+		int belowRow = y1 * 2 / TILE_SIZE;
+		if (level > 1) {
+			below = new MipTile[2][2];
+			int lastRow = (Math.min(belowHeight, y2 * 2) - 1) / TILE_SIZE;
+			int lastCol = (sx + length - 1) / TILE_SIZE;
+			for (int r = belowRow; r <= lastRow; r++) {
+				for (int c = belowCol; c <= lastCol; c++) {
+					below[r - belowRow][c - belowCol] = getTile(image, level - 1, c, r);
+				}
+			}
+		}
+
+		int width = x2 - x1;
+		for (int y = y1; y < y2; y++) {
+			boolean hasBottom = y * 2 + 1 < belowHeight;
+			readRow(image, below, belowCol, belowRow, sx, y * 2, length, top);
+			if (hasBottom) {
+				readRow(image, below, belowCol, belowRow, sx, y * 2 + 1, length, bottom);
+			}
+			boolean transparent = true;
+			for (int x = 0; x < width; x++) {
+				int i = x * 2;
+				boolean hasRight = i + 1 < length;
+				int count = (hasRight ? 2 : 1) * (hasBottom ? 2 : 1);
+				out[x] = average(top[i], hasRight ? top[i + 1] : 0, hasBottom ? bottom[i] : 0,
+						hasRight && hasBottom ? bottom[i + 1] : 0, count);
+				transparent &= out[x] == 0;
+			}
+			if (tile.image == null) {
+				if (transparent) {
+					// The rest of a tile with no image is transparent already
+					continue;
+				}
+				tile.image = new BufferedImage(Math.min(TILE_SIZE, levelWidth - col * TILE_SIZE),
+						Math.min(TILE_SIZE, levelHeight - row * TILE_SIZE), BufferedImage.TYPE_INT_ARGB);
+			}
+			tile.image.getRaster().setDataElements(x1 - col * TILE_SIZE, y - row * TILE_SIZE, width, 1, out);
+		}
+	}
+
+	/**
+	 * Reads a row of pixels from the level below a tile, where level 0 is the image itself.
+	 *
+	 * @param image The image the pyramid is built from
+	 * @param below The tiles below, or null if the level below is the image
+	 * @param belowCol The column of the first tile below
+	 * @param belowRow The row of the first tile below
+	 * @param x The X position of the first pixel, in the level below
+	 * @param y The Y position of the row, in the level below
+	 * @param length The number of pixels to read
+	 * @param pixels The array to read the pixels into
+	 */
+	private void readRow(PixelStore image, MipTile[][] below, int belowCol, int belowRow, int x, int y, int length, int[] pixels) {
+		if (below == null) {
+			image.getSpan(x, y, length, pixels, 0);
+			return;
+		}
+		MipTile[] tileRow = below[y / TILE_SIZE - belowRow];
+		for (int i = 0; i < length; ) {
+			int col = (x + i) / TILE_SIZE;
+			int tileX = x + i - col * TILE_SIZE;
+			int count = Math.min(length - i, TILE_SIZE - tileX);
+			BufferedImage tile = tileRow[col - belowCol].image;
+			if (tile == null) {
+				Arrays.fill(pixels, i, i + count, 0);
+			} else {
+				tile.getRaster().getDataElements(tileX, y % TILE_SIZE, count, 1, part);
+				System.arraycopy(part, 0, pixels, i, count);
+			}
+			i += count;
+		}
+	}
+
+	/**
+	 * Adds a tile and drops the least recently used ones until the pyramid is back under its budget.
+	 *
+	 * @param key The key of the tile
+	 * @param tile The tile
+	 */
+	private void add(long key, MipTile tile) {
+		tiles.put(key, tile);
+		bytes += sizeOf(tile);
+		Iterator<MipTile> iterator = tiles.values().iterator();
+		while (bytes > budget && tiles.size() > 1) {
+			bytes -= sizeOf(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Returns the width or height of a level.
+	 *
+	 * @param size The width or height of the image
+	 * @param level The level, where level 0 is the image itself
+	 * @return ceil(size / 2^level)
+	 */
+	private static int levelSize(int size, int level) {
+		return ((size - 1) >> level) + 1;
+	}
+
+	/**
+	 * Returns the key of a tile: the level in the top 16 bits, then 24 bits each for the column and row.
+	 *
+	 * @param level The level of the tile
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @return The key of the tile
+	 */
+	private static long key(int level, int col, int row) {
+		return ((long) level << 48) | ((long) col << 24) | row;
+	}
+
+	/**
+	 * Returns roughly how many bytes a tile takes up.
+	 *
+	 * @param tile The tile
+	 * @return The size of the tile, in bytes
+	 */
+	private static long sizeOf(MipTile tile) {
+		return tile.image == null ? 64 : 4L * tile.image.getWidth() * tile.image.getHeight();
+	}
+
+	/**
+	 * Averages up to four ARGB pixels, weighting each color by its alpha so that transparent pixels don't darken the
+	 * result. Pixels that don't exist, past the edge of the level below, are passed as 0 and left out of the count.
+	 *
+	 * @param p1 The first pixel
+	 * @param p2 The second pixel
+	 * @param p3 The third pixel
+	 * @param p4 The fourth pixel
+	 * @param count The number of pixels that exist
+	 * @return The average pixel
+	 */
+	private static int average(int p1, int p2, int p3, int p4, int count) {
+		if (p1 == p2 && p1 == p3 && p1 == p4) {
+			return p1;
+		}
+		long a = (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + (p4 >>> 24);
+		long r = weighted(p1, 16) + weighted(p2, 16) + weighted(p3, 16) + weighted(p4, 16);
+		long g = weighted(p1, 8) + weighted(p2, 8) + weighted(p3, 8) + weighted(p4, 8);
+		long b = weighted(p1, 0) + weighted(p2, 0) + weighted(p3, 0) + weighted(p4, 0);
+		if (a == 0) {
+			return 0;
+		}
+		return (int) ((a + count / 2) / count) << 24 | (int) ((r + a / 2) / a) << 16 | (int) ((g + a / 2) / a) << 8
+				| (int) ((b + a / 2) / a);
+	}
+
+	/**
+	 * Returns one color channel of a pixel multiplied by its alpha.
+	 *
+	 * @param p The ARGB pixel
+	 * @param shift How far to shift the pixel to get the channel
+	 * @return The channel times the alpha
+	 */
+	private static int weighted(int p, int shift) {
+		return ((p >> shift) & 0xFF) * (p >>> 24);
+	}
+
+
+	/**
+	 * One tile of a level of the pyramid.
+	 */
+	private static class MipTile {
+
+		/**
+		 * The pixels of the tile, or null while it's completely transparent.
+		 */
+		BufferedImage image;
+
+		/**
+		 * The part of the tile that's out of date with the level below, relative to the tile, or null if none of it is.
+		 */
+		Rectangle stale;
+
+
+		/**
+		 * Adds an area to the stale part of the tile.
+		 *
+		 * @param area The area that's out of date, relative to the tile
+		 */
+		void markStale(Rectangle area) {
+			stale = stale == null ? area : stale.union(area);
+		}
+	}
+}
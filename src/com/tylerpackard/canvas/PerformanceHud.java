@@ -0,0 +1,111 @@
+package com.tylerpackard.canvas;
+
+import com.tylerpackard.metrics.PerformanceStats;
+import com.tylerpackard.metrics.RollingHistogram;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * The PerformanceHud is a small panel in the corner of the Canvas that shows the PerformanceStats while it's turned on:
+ * the median and 99th percentile of each measurement, and the frames per second. It refreshes itself a few times a
+ * second, and only while it's showing. Like the CursorOverlay, it has no mouse listeners, so the mouse goes straight
+ * through it to the image.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see PerformanceStats
+ */
+class PerformanceHud extends JComponent {
+
+	/**
+	 * The height of each line of text.
+	 */
+	private static final int LINE_HEIGHT = 14;
+
+	/**
+	 * The number of lines shown.
+	 */
+	private static final int LINES = 7;
+
+	/**
+	 * The font the stats are written in.
+	 */
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	/**
+	 * The see-through background behind the text.
+	 */
+	private static final Color BACKGROUND = new Color(0, 0, 0, 180);
+
+	/**
+	 * The stats to show.
+	 */
+	private final PerformanceStats stats;
+
+	/**
+	 * Repaints the HUD while it's showing.
+	 */
+	private final Timer refreshTimer = new Timer(250, e -> repaint());
+
+
+	/**
+	 * Creates a new, hidden HUD in the top left corner.
+	 *
+	 * @param stats The stats to show
+	 */
+	PerformanceHud(PerformanceStats stats) {
+		this.stats = stats;
+		setOpaque(false);
+		setBounds(8, 8, 300, LINES * LINE_HEIGHT + 10);
+		setVisible(false);
+	}
+
+
+	/**
+	 * Shows the HUD if it's hidden, or hides it if it's showing.
+	 */
+	void toggle() {
+		setVisible(!isVisible());
+		if (isVisible()) {
+			refreshTimer.start();
+		} else {
+			refreshTimer.stop();
+		}
+	}
+
+	/**
+	 * Draws the background and the latest stats.
+	 *
+	 * @param g The Graphics object to paint with
+	 */
+	@Override
+	public void paint(Graphics g) {
+		g.setColor(BACKGROUND);
+		g.fillRoundRect(0, 0, getWidth(), getHeight(), 8, 8);
+		g.setColor(Color.WHITE);
+		g.setFont(FONT);
+		int y = 5 + g.getFontMetrics().getAscent();
+		g.drawString(String.format("FPS      %d", stats.getFramesPerSecond()), 8, y);
+		g.drawString(formatMillis("Paint", stats.getPaintTime()), 8, y += LINE_HEIGHT);
+		g.drawString(formatMillis("Render", stats.getRenderTime()), 8, y += LINE_HEIGHT);
+		g.drawString(formatMillis("Tool", stats.getToolTime()), 8, y += LINE_HEIGHT);
+		g.drawString(formatMillis("Color", stats.getColorUpdateTime()), 8, y += LINE_HEIGHT);
+		RollingHistogram latency = stats.getInputLatency();
+		g.drawString(String.format("Latency  p50 %5d ms  p99 %5d ms", latency.getPercentile(50), latency.getPercentile(99)), 8, y += LINE_HEIGHT);
+		RollingHistogram dirty = stats.getDirtyArea();
+		g.drawString(String.format("Dirty    p50 %6d px p99 %6d px", dirty.getPercentile(50), dirty.getPercentile(99)), 8, y += LINE_HEIGHT);
+	}
+
+	/**
+	 * Formats a line for a histogram of times in microseconds, showing them in milliseconds.
+	 *
+	 * @param name The name of the measurement
+	 * @param histogram The histogram of times, in microseconds
+	 * @return The line to show
+	 */
+	private static String formatMillis(String name, RollingHistogram histogram) {
+		return String.format("%-8s p50 %5.2f ms  p99 %5.2f ms", name, histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0);
+	}
+}
@@ -0,0 +1,619 @@
+package com.tylerpackard.canvas;
+
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.metrics.PerformanceStats;
+import com.tylerpackard.ui.Checkerboard;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The RenderWorker draws the Canvas's view of the image on a background thread, so a slow frame doesn't hold up the
+ * event thread and the mouse events waiting behind it. The event thread sends it the View it should show along with
+ * the area of the image that changed, and the worker draws only what it needs to into its own frame: the changed area,
+ * and when the view has been panned, the strips that were uncovered. Requests that come in while a frame is being drawn
+ * are merged into one, so the worker always draws the latest view and old frames are skipped rather than queued up.
+ * <p>
+ * Finished frames are copied into a shared frame, along with how it has changed since the event thread last looked at
+ * it, and the event thread copies just those changes onto the screen. Images with cheap snapshots are drawn from a
+ * snapshot, so the event thread can carry on changing them, and the snapshot is released as soon as it's drawn or
+ * replaced by a newer request, so the image only has to copy a tile it writes to while a frame still needs it. Other
+ * images would have to be copied in full for every frame, so the worker draws them as they are while the event thread
+ * changes them. A frame may catch a change half done, but every change is sent along with its dirty area afterwards,
+ * so it's drawn again in the next frame.
+ *
+ * @author Tyler Packard
+ * @version 2
+ * @since 0.0.1
+ * @see Canvas
+ */
+class RenderWorker {
+
+	/**
+	 * A view of the image for the worker to draw. Views are never changed once they're made, so they can be handed
+	 * between threads.
+	 */
+	static final class View {
+
+		/**
+		 * The image to draw, which is a snapshot if the image has cheap snapshots, or null in the view of the last frame
+		 * drawn, which only keeps its layout.
+		 */
+		final PixelStore image;
+
+		/**
+		 * The width of the view, in screen pixels.
+		 */
+		final int width;
+
+		/**
+		 * The height of the view, in screen pixels.
+		 */
+		final int height;
+
+		/**
+		 * How many device pixels there are per screen pixel, which is 2 on a retina display.
+		 */
+		final int scale;
+
+		/**
+		 * The X position of the image in the view.
+		 */
+		final int xPos;
+
+		/**
+		 * The Y position of the image in the view.
+		 */
+		final int yPos;
+
+		/**
+		 * How many screen pixels each image pixel covers when zoomed in.
+		 */
+		final int scaledZoom;
+
+		/**
+		 * The level of the MipPyramid to draw when zoomed out, or 0 when not.
+		 */
+		final int mipLevel;
+
+		/**
+		 * The width of the image at this zoom, in screen pixels.
+		 */
+		final int imageWidth;
+
+		/**
+		 * The height of the image at this zoom, in screen pixels.
+		 */
+		final int imageHeight;
+
+		/**
+		 * The color drawn around the image.
+		 */
+		final Color background;
+
+
+		/**
+		 * Creates a new view.
+		 *
+		 * @param image The image to draw
+		 * @param width The width of the view
+		 * @param height The height of the view
+		 * @param scale How many device pixels there are per screen pixel
+		 * @param xPos The X position of the image in the view
+		 * @param yPos The Y position of the image in the view
+		 * @param scaledZoom How many screen pixels each image pixel covers when zoomed in
+		 * @param mipLevel The level of the MipPyramid to draw, or 0 when not zoomed out
+		 * @param imageWidth The width of the image at this zoom
+		 * @param imageHeight The height of the image at this zoom
+		 * @param background The color drawn around the image
+		 */
+		View(PixelStore image, int width, int height, int scale, int xPos, int yPos, int scaledZoom, int mipLevel,
+			 int imageWidth, int imageHeight, Color background) {
+			this.image = image;
+			this.width = width;
+			this.height = height;
+			this.scale = scale;
+			this.xPos = xPos;
+			this.yPos = yPos;
+			this.scaledZoom = scaledZoom;
+			this.mipLevel = mipLevel;
+			this.imageWidth = imageWidth;
+			this.imageHeight = imageHeight;
+			this.background = background;
+		}
+
+
+		/**
+		 * Returns the same view of a different image, such as a snapshot of this one.
+		 *
+		 * @param image The image to draw
+		 * @return The new view
+		 */
+		View withImage(PixelStore image) {
+			return new View(image, width, height, scale, xPos, yPos, scaledZoom, mipLevel, imageWidth, imageHeight, background);
+		}
+
+		/**
+		 * Returns whether or not another view only differs from this one in where the image is, so that a frame of one
+		 * can be turned into a frame of the other by shifting it.
+		 *
+		 * @param other The other view
+		 * @return Whether or not the views are the same apart from the position of the image
+		 */
+		boolean hasSameLayout(View other) {
+			return width == other.width && height == other.height && scale == other.scale
+					&& scaledZoom == other.scaledZoom && mipLevel == other.mipLevel && imageWidth == other.imageWidth
+					&& imageHeight == other.imageHeight && background.equals(other.background);
+		}
+	}
+
+
+	/**
+	 * Guards the request waiting to be drawn.
+	 */
+	private final Object requestLock = new Object();
+
+	/**
+	 * Guards the shared frame and the changes to it that the event thread hasn't copied yet.
+	 */
+	private final Object frameLock = new Object();
+
+	/**
+	 * The latest view asked for, or null if there's nothing waiting to be drawn.
+	 */
+	private View pendingView;
+
+	/**
+	 * The area of the image that has changed in all of the requests waiting to be drawn, in image pixels.
+	 */
+	private final DirtyRegion pendingDirty = new DirtyRegion();
+
+	/**
+	 * Whether or not a waiting request needs the whole frame drawn again.
+	 */
+	private boolean pendingRedraw = false;
+
+	/**
+	 * Whether or not the image has been replaced since the last frame was drawn.
+	 */
+	private boolean pendingReplaced = false;
+
+	/**
+	 * Whether or not the image of the waiting request is a snapshot, which is released once it's been drawn.
+	 */
+	private boolean pendingSnapshot = false;
+
+	/**
+	 * When the oldest input in the waiting requests happened, or 0 if they don't show any input.
+	 */
+	private long pendingInputWhen = 0;
+
+	/**
+	 * Images that have been replaced, waiting to be released once the frame being drawn is finished with them.
+	 */
+	private final List<PixelStore> retired = new ArrayList<>();
+
+	/**
+	 * The scaled tiles of the image at each zoom level that has been drawn. Only used on the worker's thread.
+	 */
+	private final ZoomCache zoomCache = new ZoomCache();
+
+	/**
+	 * The smaller copies of the image for when it's zoomed out. Only used on the worker's thread.
+	 */
+	private final MipPyramid mipPyramid = new MipPyramid();
+
+	/**
+	 * The frame being drawn, in device pixels. Only used on the worker's thread.
+	 */
+	private BufferedImage frame;
+
+	/**
+	 * The layout of the view the frame shows, with no image, or null if nothing has been drawn yet. Only used on the
+	 * worker's thread.
+	 */
+	private View frameView;
+
+	/**
+	 * The latest finished frame, which the event thread copies onto the screen, or null if there isn't one yet.
+	 */
+	private BufferedImage shared;
+
+	/**
+	 * Whether or not all of the shared frame has to be copied onto the screen.
+	 */
+	private boolean sharedAll = true;
+
+	/**
+	 * How far the shared frame has been shifted across since it was last copied onto the screen, in device pixels.
+	 */
+	private int sharedShiftX = 0;
+
+	/**
+	 * How far the shared frame has been shifted down since it was last copied onto the screen, in device pixels.
+	 */
+	private int sharedShiftY = 0;
+
+	/**
+	 * The area of the shared frame that has been drawn since it was last copied onto the screen, after shifting, in
+	 * device pixels.
+	 */
+	private final DirtyRegion sharedDamage = new DirtyRegion();
+
+	/**
+	 * When the oldest input shown by the shared frame but not yet by the screen happened, or 0 if there isn't any.
+	 */
+	private long sharedInputWhen = 0;
+
+	/**
+	 * Where the time taken to draw frames and to get input onto the screen is recorded.
+	 */
+	private final PerformanceStats stats;
+
+	/**
+	 * Called on the event thread with the area of the view that changed whenever a frame is finished.
+	 */
+	private final Consumer<Rectangle> repaint;
+
+
+	/**
+	 * Creates a new worker and starts its thread, which sits idle until it's given something to draw.
+	 *
+	 * @param stats Where to record the time taken to draw frames and to get input onto the screen
+	 * @param repaint Called on the event thread with the area of the view that changed whenever a frame is finished
+	 */
+	RenderWorker(PerformanceStats stats, Consumer<Rectangle> repaint) {
+		this.stats = stats;
+		this.repaint = repaint;
+		Thread thread = new Thread(this::run, "Canvas Renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+	/**
+	 * Asks for a view to be drawn. Called on the event thread. The view is drawn on the worker, from a snapshot if the
+	 * image has cheap snapshots, and this returns straight away. The repaint callback is told once it's ready. A
+	 * request that's still waiting is merged into this one, and its snapshot is released without being drawn.
+	 *
+	 * @param view The view to draw
+	 * @param dirty The area of the image that has changed since the last request, or null if nothing has
+	 * @param redraw Whether or not the whole view needs to be drawn again
+	 * @param replaced Whether or not the image has been replaced since the last request
+	 * @param inputWhen When the oldest input this request shows happened, or 0 if it doesn't show any
+	 */
+	void submit(View view, Rectangle dirty, boolean redraw, boolean replaced, long inputWhen) {
+		boolean snapshot = view.image.hasCheapSnapshots();
+		if (snapshot) {
+			view = view.withImage(view.image.snapshot());
+		}
+		synchronized (requestLock) {
+			if (pendingView != null && pendingSnapshot) {
+				pendingView.image.release();
+			}
+			pendingView = view;
+			pendingSnapshot = snapshot;
+			if (dirty != null) {
+				pendingDirty.add(dirty);
+			}
+			pendingRedraw |= redraw;
+			pendingReplaced |= replaced;
+			if (inputWhen != 0 && (pendingInputWhen == 0 || inputWhen < pendingInputWhen)) {
+				pendingInputWhen = inputWhen;
+			}
+			requestLock.notify();
+		}
+	}
+
+	/**
+	 * Releases an image that has been replaced once the worker has finished drawing it. Called on the event thread,
+	 * after a request for the new image has been made, so no request waiting to be drawn can still use the old one.
+	 *
+	 * @param image The image that has been replaced
+	 */
+	void retire(PixelStore image) {
+		synchronized (requestLock) {
+			retired.add(image);
+			requestLock.notify();
+		}
+	}
+
+	/**
+	 * Copies the changes to the latest finished frame onto the screen buffer, making a new screen buffer first if
+	 * there isn't one, or it's the wrong size or no longer works. Called on the event thread while painting.
+	 *
+	 * @param screen The screen buffer, or null if there isn't one yet
+	 * @param config The GraphicsConfiguration of the screen being painted to
+	 * @param all Whether or not to copy the whole frame, such as when the screen buffer's contents have been lost
+	 * @return The screen buffer to paint, or null if no frame has been finished yet
+	 */
+	VolatileImage present(VolatileImage screen, GraphicsConfiguration config, boolean all) {
+		synchronized (frameLock) {
+			if (shared == null) {
+				return screen;
+			}
+			int status = screen == null ? VolatileImage.IMAGE_INCOMPATIBLE : screen.validate(config);
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE || screen.getWidth() != shared.getWidth()
+					|| screen.getHeight() != shared.getHeight()) {
+				if (screen != null) {
+					screen.flush();
+				}
+				screen = config.createCompatibleVolatileImage(shared.getWidth(), shared.getHeight());
+				all = true;
+			} else if (status == VolatileImage.IMAGE_RESTORED) {
+				all = true;
+			}
+
+			boolean changed = sharedAll || sharedShiftX != 0 || sharedShiftY != 0 || !sharedDamage.isEmpty();
+			Graphics2D g = screen.createGraphics();
+			if (all || sharedAll) {
+				g.drawImage(shared, 0, 0, null);
+			} else {
+				if (sharedShiftX != 0 || sharedShiftY != 0) {
+					g.copyArea(0, 0, screen.getWidth(), screen.getHeight(), sharedShiftX, sharedShiftY);
+				}
+				Rectangle damage = sharedDamage.getBounds();
+				if (damage != null) {
+					int x2 = damage.x + damage.width;
+					int y2 = damage.y + damage.height;
+					g.drawImage(shared, damage.x, damage.y, x2, y2, damage.x, damage.y, x2, y2, null);
+				}
+			}
+			g.dispose();
+			sharedAll = false;
+			sharedShiftX = 0;
+			sharedShiftY = 0;
+			sharedDamage.clear();
+
+			if (changed) {
+				stats.frameShown();
+			}
+			if (sharedInputWhen != 0) {
+				stats.getInputLatency().record(System.currentTimeMillis() - sharedInputWhen);
+				sharedInputWhen = 0;
+			}
+			return screen;
+		}
+	}
+
+	/**
+	 * The worker's loop, which waits for a request, takes it and draws it, and then releases its snapshot along with
+	 * any images that were replaced before it was taken.
+	 */
+	private void run() {
+		while (true) {
+			View view;
+			Rectangle dirty;
+			boolean redraw;
+			boolean replaced;
+			boolean snapshot;
+			long inputWhen;
+			List<PixelStore> done;
+			synchronized (requestLock) {
+				while (pendingView == null && retired.isEmpty()) {
+					try {
+						requestLock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				view = pendingView;
+				dirty = pendingDirty.getBounds();
+				redraw = pendingRedraw;
+				replaced = pendingReplaced;
+				snapshot = pendingSnapshot;
+				inputWhen = pendingInputWhen;
+				pendingView = null;
+				pendingDirty.clear();
+				pendingRedraw = false;
+				pendingReplaced = false;
+				pendingInputWhen = 0;
+				done = new ArrayList<>(retired);
+				retired.clear();
+			}
+			if (view != null) {
+				long start = System.nanoTime();
+				try {
+					draw(view, dirty, redraw, replaced, inputWhen);
+				} finally {
+					if (snapshot) {
+						view.image.release();
+					}
+				}
+				stats.getRenderTime().record((System.nanoTime() - start) / 1000);
+			}
+			for (PixelStore image : done) {
+				image.release();
+			}
+		}
+	}
+
+	/**
+	 * Brings the frame up to date with the given view and passes on what changed. The frame is only drawn in full if
+	 * it's asked for or the layout of the view has changed, otherwise it's shifted by however far the image moved and
+	 * only the uncovered strips and the changed area of the image are drawn.
+	 *
+	 * @param view The view to draw
+	 * @param dirty The area of the image that has changed, or null if nothing has
+	 * @param redraw Whether or not to draw the whole frame
+	 * @param replaced Whether or not the image has been replaced
+	 * @param inputWhen When the oldest input the view shows happened, or 0 if it doesn't show any
+	 */
+	private void draw(View view, Rectangle dirty, boolean redraw, boolean replaced, long inputWhen) {
+		if (replaced) {
+			zoomCache.clear();
+			mipPyramid.clear();
+		}
+		if (dirty != null) {
+			zoomCache.invalidate(dirty);
+			mipPyramid.invalidate(dirty);
+		}
+
+		int frameWidth = Math.max(1, view.width * view.scale);
+		int frameHeight = Math.max(1, view.height * view.scale);
+		if (frame == null || frame.getWidth() != frameWidth || frame.getHeight() != frameHeight) {
+			frame = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_RGB);
+			redraw = true;
+		}
+		int dx = 0;
+		int dy = 0;
+		if (!redraw) {
+			redraw = frameView == null || !view.hasSameLayout(frameView);
+		}
+		if (!redraw) {
+			dx = view.xPos - frameView.xPos;
+			dy = view.yPos - frameView.yPos;
+			redraw = Math.abs(dx) >= view.width || Math.abs(dy) >= view.height;
+		}
+		frameView = view.withImage(null);
+
+		Graphics2D g = frame.createGraphics();
+		g.scale(view.scale, view.scale);
+		DirtyRegion changed = new DirtyRegion();
+		if (redraw) {
+			dx = 0;
+			dy = 0;
+			render(g, view, new Rectangle(0, 0, view.width, view.height));
+		} else {
+			if (dx != 0 || dy != 0) {
+				Graphics2D copy = frame.createGraphics();
+				copy.copyArea(0, 0, frameWidth, frameHeight, dx * view.scale, dy * view.scale);
+				copy.dispose();
+				if (dx != 0) {
+					Rectangle strip = new Rectangle(dx > 0 ? 0 : view.width + dx, 0, Math.abs(dx), view.height);
+					render(g, view, strip);
+					changed.add(strip);
+				}
+				if (dy != 0) {
+					Rectangle strip = new Rectangle(0, dy > 0 ? 0 : view.height + dy, view.width, Math.abs(dy));
+					render(g, view, strip);
+					changed.add(strip);
+				}
+			}
+			if (dirty != null) {
+				Rectangle damage = toView(view, dirty);
+				if (!damage.isEmpty()) {
+					render(g, view, damage);
+					changed.add(damage);
+				}
+			}
+		}
+		g.dispose();
+
+		if (redraw || !changed.isEmpty()) {
+			publish(view, redraw, dx, dy, redraw ? null : changed.getBounds(), inputWhen);
+		}
+	}
+
+	/**
+	 * Returns where an area of the image lands in a view, clipped to the view.
+	 *
+	 * @param view The view
+	 * @param area The area of the image, in image pixels
+	 * @return The area in the view, in screen pixels
+	 */
+	private static Rectangle toView(View view, Rectangle area) {
+		Rectangle damage;
+		if (view.mipLevel > 0) {
+			int x1 = area.x >> view.mipLevel;
+			int y1 = area.y >> view.mipLevel;
+			damage = new Rectangle(x1, y1, ((area.x + area.width - 1) >> view.mipLevel) + 1 - x1, ((area.y + area.height - 1) >> view.mipLevel) + 1 - y1);
+		} else {
+			damage = new Rectangle(area.x * view.scaledZoom, area.y * view.scaledZoom, area.width * view.scaledZoom, area.height * view.scaledZoom);
+		}
+		damage.translate(view.xPos, view.yPos);
+		return damage.intersection(new Rectangle(0, 0, view.width, view.height));
+	}
+
+	/**
+	 * Copies what changed in the frame into the shared frame, adding it to the changes the event thread hasn't copied
+	 * yet, and then tells the event thread to repaint.
+	 *
+	 * @param view The view the frame shows
+	 * @param all Whether or not the whole frame changed
+	 * @param dx How far the frame was shifted across, in screen pixels
+	 * @param dy How far the frame was shifted down, in screen pixels
+	 * @param changed The area of the frame that was drawn after shifting, in screen pixels, or null if all of it was
+	 * @param inputWhen When the oldest input the frame shows happened, or 0 if it doesn't show any
+	 */
+	private void publish(View view, boolean all, int dx, int dy, Rectangle changed, long inputWhen) {
+		synchronized (frameLock) {
+			if (shared == null || shared.getWidth() != frame.getWidth() || shared.getHeight() != frame.getHeight()) {
+				shared = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+				all = true;
+			}
+
+			Graphics2D g = shared.createGraphics();
+			if (all) {
+				g.drawImage(frame, 0, 0, null);
+				sharedAll = true;
+			} else {
+				if (dx != 0 || dy != 0) {
+					g.copyArea(0, 0, shared.getWidth(), shared.getHeight(), dx * view.scale, dy * view.scale);
+					sharedShiftX += dx * view.scale;
+					sharedShiftY += dy * view.scale;
+					Rectangle damage = sharedDamage.getBounds();
+					if (damage != null) {
+						sharedDamage.clear();
+						sharedDamage.add(damage.x + dx * view.scale, damage.y + dy * view.scale, damage.width, damage.height);
+					}
+				}
+				int x1 = changed.x * view.scale;
+				int y1 = changed.y * view.scale;
+				int x2 = (changed.x + changed.width) * view.scale;
+				int y2 = (changed.y + changed.height) * view.scale;
+				g.drawImage(frame, x1, y1, x2, y2, x1, y1, x2, y2, null);
+				sharedDamage.add(x1, y1, x2 - x1, y2 - y1);
+			}
+			g.dispose();
+
+			if (inputWhen != 0 && (sharedInputWhen == 0 || inputWhen < sharedInputWhen)) {
+				sharedInputWhen = inputWhen;
+			}
+		}
+
+		Rectangle area = all || dx != 0 || dy != 0 ? new Rectangle(0, 0, view.width, view.height) : changed;
+		SwingUtilities.invokeLater(() -> repaint.accept(area));
+	}
+
+	/**
+	 * Draws an area of a view: the background, and the checkerboard and image wherever the area overlaps the image.
+	 * Only the part of the image inside the area is drawn, so the cost depends on the size of the area rather than on
+	 * how far the image is zoomed in. When zoomed in, the image comes from the ZoomCache, so drawing parts that have
+	 * been drawn before is just copying tiles.
+	 *
+	 * @param g The Graphics object to draw with, in screen pixels
+	 * @param view The view being drawn
+	 * @param area The area to draw, in screen pixels
+	 */
+	private void render(Graphics2D g, View view, Rectangle area) {
+		/* DRAW BACKGROUND */
+		g.setColor(view.background);
+		g.fillRect(area.x, area.y, area.width, area.height);
+
+		Rectangle visible = area.intersection(new Rectangle(view.xPos, view.yPos, view.imageWidth, view.imageHeight));
+		if (visible.isEmpty()) {
+			return;
+		}
+		visible.translate(-view.xPos, -view.yPos);
+		Graphics2D imageGraphics = (Graphics2D) g.create();
+		imageGraphics.translate(view.xPos, view.yPos);
+		imageGraphics.clipRect(visible.x, visible.y, visible.width, visible.height);
+		Checkerboard.fill(imageGraphics, 8, view.scale == 2, visible.x, visible.y, visible.width, visible.height);
+
+		/* DRAW IMAGE */
+		if (view.mipLevel > 0) {
+			mipPyramid.draw(imageGraphics, view.image, visible, view.mipLevel);
+		} else if (view.scaledZoom > 1) {
+			zoomCache.draw(imageGraphics, view.image, visible, view.scaledZoom);
+		} else {
+			view.image.draw(imageGraphics, visible, 1);
+		}
+		imageGraphics.dispose();
+	}
+}
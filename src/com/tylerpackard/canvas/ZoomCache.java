@@ -0,0 +1,229 @@
+package com.tylerpackard.canvas;
+
+import com.tylerpackard.image.PixelStore;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A ZoomCache keeps copies of the image already scaled up to each zoom level, cut into square tiles of
+ * {@link #TILE_SIZE} screen pixels. Scaling is nearest-neighbour, so building a tile is just repeating each pixel, and
+ * once it's built, drawing that part of the image again is a plain copy with no scaling at all. Tiles are made
+ * through their rasters rather than by grabbing their pixel arrays, so Java2D is free to keep them in video memory.
+ * The least recently drawn tiles are dropped once the cache goes over its memory budget, and the RenderWorker drops
+ * the tiles under any area of the image that changes. It's only used by whichever thread is drawing a frame.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see RenderWorker
+ */
+class ZoomCache {
+
+	/**
+	 * The width and height of each cached tile, in screen pixels.
+	 */
+	static final int TILE_SIZE = 256;
+
+	/**
+	 * The default memory budget of the cache, in megabytes. Can be changed with the pixeleditor.zoomCacheMB property.
+	 */
+	static final int DEFAULT_BUDGET_MB = Integer.getInteger("pixeleditor.zoomCacheMB", 64);
+
+	/**
+	 * Stands in for tiles that are completely transparent, which don't need to be drawn or stored.
+	 */
+	private static final BufferedImage EMPTY = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+	/**
+	 * The cached tiles in order from least to most recently drawn, keyed by zoom, column and row.
+	 *
+	 * @see #key(int, int, int)
+	 */
+	private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<>(256, 0.75f, true);
+
+	/**
+	 * The most bytes the cached tiles may take up.
+	 */
+	private final long budget;
+
+	/**
+	 * The bytes taken up by the cached tiles.
+	 */
+	private long bytes = 0;
+
+	/**
+	 * A row of a tile being built, reused between tiles.
+	 */
+	private final int[] scaledRow = new int[TILE_SIZE];
+
+	/**
+	 * The source pixels of a row of a tile being built, reused between tiles.
+	 */
+	private final int[] sourceRow = new int[TILE_SIZE];
+
+
+	/**
+	 * Creates a new, empty cache with the default budget.
+	 */
+	ZoomCache() {
+		this(DEFAULT_BUDGET_MB * 1024L * 1024L);
+	}
+
+	/**
+	 * Creates a new, empty cache.
+	 *
+	 * @param budget The most bytes the cached tiles may take up
+	 */
+	ZoomCache(long budget) {
+		this.budget = budget;
+	}
+
+
+	/**
+	 * Draws part of the image scaled up by the given zoom, building any tiles that aren't cached yet. The area is in
+	 * screen pixels, so the image pixel (x, y) covers the screen pixels from (x * zoom, y * zoom).
+	 *
+	 * @param g The Graphics to paint with
+	 * @param image The image to draw
+	 * @param area The area to draw, in screen pixels
+	 * @param zoom How many screen pixels each image pixel covers, which must be a power of two no bigger than
+	 *             TILE_SIZE
+	 */
+	void draw(Graphics g, PixelStore image, Rectangle area, int zoom) {
+		int x2 = Math.min(area.x + area.width, image.getWidth() * zoom);
+		int y2 = Math.min(area.y + area.height, image.getHeight() * zoom);
+		for (int row = Math.max(0, area.y) / TILE_SIZE; row * TILE_SIZE < y2; row++) {
+			for (int col = Math.max(0, area.x) / TILE_SIZE; col * TILE_SIZE < x2; col++) {
+				BufferedImage tile = tiles.get(key(zoom, col, row));
+				if (tile == null) {
+					tile = build(image, zoom, col, row);
+					add(key(zoom, col, row), tile);
+				}
+				if (tile != EMPTY) {
+					g.drawImage(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached tile, at any zoom, that shows part of the given area of the image.
+	 *
+	 * @param area The area of the image that changed, in image pixels
+	 */
+	void invalidate(Rectangle area) {
+		if (tiles.isEmpty()) {
+			return;
+		}
+		Iterator<Map.Entry<Long, BufferedImage>> iterator = tiles.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, BufferedImage> entry = iterator.next();
+			long key = entry.getKey();
+			int zoom = (int) (key >>> 48);
+			int col = (int) (key >>> 24) & 0xFFFFFF;
+			int row = (int) key & 0xFFFFFF;
+			int span = TILE_SIZE / zoom;
+			if (col * span < area.x + area.width && (col + 1) * span > area.x
+					&& row * span < area.y + area.height && (row + 1) * span > area.y) {
+				bytes -= sizeOf(entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached tile, for when the image is replaced.
+	 */
+	void clear() {
+		tiles.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Adds a tile to the cache and drops the least recently drawn ones until it's back under its budget.
+	 *
+	 * @param key The key of the tile
+	 * @param tile The tile
+	 */
+	private void add(long key, BufferedImage tile) {
+		tiles.put(key, tile);
+		bytes += sizeOf(tile);
+		Iterator<BufferedImage> iterator = tiles.values().iterator();
+		while (bytes > budget && tiles.size() > 1) {
+			bytes -= sizeOf(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Builds the tile at the given zoom, column and row by repeating each source pixel zoom times across and down.
+	 *
+	 * @param image The image to scale
+	 * @param zoom How many screen pixels each image pixel covers
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @return The scaled tile, or EMPTY if it's completely transparent
+	 */
+	private BufferedImage build(PixelStore image, int zoom, int col, int row) {
+		int span = TILE_SIZE / zoom;
+		int sx = col * span;
+		int sy = row * span;
+		int sourceWidth = Math.min(span, image.getWidth() - sx);
+		int sourceHeight = Math.min(span, image.getHeight() - sy);
+
+		BufferedImage tile = null;
+		WritableRaster raster = null;
+		for (int y = 0; y < sourceHeight; y++) {
+			image.getSpan(sx, sy + y, sourceWidth, sourceRow, 0);
+			if (tile == null) {
+				boolean transparent = true;
+				for (int x = 0; x < sourceWidth && transparent; x++) {
+					transparent = sourceRow[x] == 0;
+				}
+				if (transparent) {
+					continue;
+				}
+				tile = new BufferedImage(sourceWidth * zoom, sourceHeight * zoom, BufferedImage.TYPE_INT_ARGB);
+				raster = tile.getRaster();
+			}
+
+			for (int x = 0; x < sourceWidth; x++) {
+				int rgb = sourceRow[x];
+				for (int i = x * zoom, end = i + zoom; i < end; i++) {
+					scaledRow[i] = rgb;
+				}
+			}
+			for (int i = 0; i < zoom; i++) {
+				raster.setDataElements(0, y * zoom + i, sourceWidth * zoom, 1, scaledRow);
+			}
+		}
+		return tile == null ? EMPTY : tile;
+	}
+
+	/**
+	 * Returns the key of a tile: the zoom in the top 16 bits, then 24 bits each for the column and row.
+	 *
+	 * @param zoom The zoom of the tile
+	 * @param col The column of the tile
+	 * @param row The row of the tile
+	 * @return The key of the tile
+	 */
+	private static long key(int zoom, int col, int row) {
+		return ((long) zoom << 48) | ((long) col << 24) | row;
+	}
+
+	/**
+	 * Returns roughly how many bytes a tile takes up.
+	 *
+	 * @param tile The tile
+	 * @return The size of the tile, in bytes
+	 */
+	private static long sizeOf(BufferedImage tile) {
+		return tile == EMPTY ? 64 : 4L * tile.getWidth() * tile.getHeight();
+	}
+}
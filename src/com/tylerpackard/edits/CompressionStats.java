@@ -0,0 +1,114 @@
+package com.tylerpackard.edits;
+
+/**
+ * Keeps track of how well the history is being compressed: how many bytes went in and came out, and how long
+ * compressing and inflating took. Edits are compressed on a background thread and inflated on the event thread, so
+ * every method is synchronized.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ */
+public class CompressionStats {
+
+	/**
+	 * The total size of every edit before it was compressed.
+	 */
+	private long rawBytes = 0;
+
+	/**
+	 * The total size of every edit after it was compressed.
+	 */
+	private long compressedBytes = 0;
+
+	/**
+	 * The number of edits compressed.
+	 */
+	private int compressions = 0;
+
+	/**
+	 * The total time spent compressing, in nanoseconds.
+	 */
+	private long compressNanos = 0;
+
+	/**
+	 * The number of edits inflated.
+	 */
+	private int inflations = 0;
+
+	/**
+	 * The total time spent inflating, in nanoseconds.
+	 */
+	private long inflateNanos = 0;
+
+
+	/**
+	 * Records that an edit was compressed.
+	 *
+	 * @param rawBytes The size of the edit before it was compressed
+	 * @param compressedBytes The size of the edit after it was compressed
+	 * @param nanos How long compressing took, in nanoseconds
+	 */
+	synchronized void compressed(long rawBytes, long compressedBytes, long nanos) {
+		this.rawBytes += rawBytes;
+		this.compressedBytes += compressedBytes;
+		compressNanos += nanos;
+		compressions++;
+	}
+
+	/**
+	 * Records that an edit was inflated.
+	 *
+	 * @param nanos How long inflating took, in nanoseconds
+	 */
+	synchronized void inflated(long nanos) {
+		inflateNanos += nanos;
+		inflations++;
+	}
+
+	/**
+	 * Returns how many times smaller edits are once compressed, or 1 if nothing has been compressed yet.
+	 *
+	 * @return The compression ratio
+	 */
+	public synchronized double getRatio() {
+		return compressedBytes == 0 ? 1 : (double) rawBytes / compressedBytes;
+	}
+
+	/**
+	 * @return The number of edits compressed
+	 */
+	public synchronized int getCompressions() {
+		return compressions;
+	}
+
+	/**
+	 * @return The average time it took to compress an edit, in nanoseconds
+	 */
+	public synchronized long getAverageCompressNanos() {
+		return compressions == 0 ? 0 : compressNanos / compressions;
+	}
+
+	/**
+	 * @return The number of edits inflated
+	 */
+	public synchronized int getInflations() {
+		return inflations;
+	}
+
+	/**
+	 * @return The average time it took to inflate an edit, in nanoseconds
+	 */
+	public synchronized long getAverageInflateNanos() {
+		return inflations == 0 ? 0 : inflateNanos / inflations;
+	}
+
+	/**
+	 * @return A short summary of the stats
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("%d edits compressed %.1fx in %.2f ms avg, %d inflated in %.2f ms avg", compressions,
+				getRatio(), getAverageCompressNanos() / 1e6, inflations, getAverageInflateNanos() / 1e6);
+	}
+}
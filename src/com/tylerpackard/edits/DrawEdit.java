@@ -1,28 +1,90 @@
 package com.tylerpackard.edits;
 
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.tools.Tool;
 
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
- * The draw edit allows the drawing of a point or set of points to be undone or redone.
+ * The draw edit allows the drawing of a point or set of points to be undone or redone. The changed pixels are kept in
+ * parallel int arrays in the order they were drawn, with an open-addressing hash table keyed on the packed coordinate
+ * so that each pixel is only recorded once. Once an edit is old, the history may compress it: the coordinates are
+ * stored as differences from the one before, which are nearly all the same along a stroke, and then everything is
+ * deflated. A compressed edit inflates itself again when it's enacted, and writing it only inflates a temporary copy,
+ * so it stays compressed. Pixels are written to the image a horizontal span at a time wherever the changes allow it,
+ * both while drawing and when undoing or redoing.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 4
  * @since 0.0.1
  */
 public class DrawEdit extends Edit {
 
 	/**
-	 * The image which was edited
+	 * The largest width or height an image can have, since each coordinate of a change is packed into 16 bits.
+	 *
+	 * @see #pack(int, int)
+	 */
+	public static final int MAX_SIZE = 0xFFFF;
+
+	/**
+	 * The number of changes the arrays can hold before they first need to grow.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The packed coordinates of each change, in the order they were added, or null while the edit is compressed.
+	 *
+	 * @see #pack(int, int)
+	 */
+	private int[] coords = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The previous RGB value of each change, or null while the edit is compressed.
+	 */
+	private int[] prevRGBs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The new RGB value of each change, or null while the edit is compressed.
+	 */
+	private int[] newRGBs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The number of changes made in the edit.
+	 */
+	private int size = 0;
+
+	/**
+	 * The open-addressing hash table of the changes. Each slot holds the index of a change plus one, or zero if the
+	 * slot is empty. Its length is always a power of two and at least twice the capacity of the change arrays. Null
+	 * while the edit is compressed.
 	 */
-	private final BufferedImage image;
+	private int[] table = new int[INITIAL_CAPACITY * 2];
 
 	/**
-	 * A list of all changes made in the edit
+	 * The deflated coordinate differences, previous RGB values, and new RGB values of the changes, or null if the edit
+	 * isn't compressed.
 	 */
-	private ArrayList<Change> changes = new ArrayList<>();
+	private byte[] compressed;
+
+	/**
+	 * The stats to record inflating the edit in, set when it's compressed.
+	 */
+	private CompressionStats stats;
+
+	/**
+	 * The bounds of all of the changes, inclusive.
+	 */
+	private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
 
 
 	/**
@@ -31,20 +93,49 @@ public class DrawEdit extends Edit {
 	 * @param tool The tool used to make the edit
 	 * @param image The image edited
 	 */
-	public DrawEdit(Tool tool, BufferedImage image) {
-		super(tool);
-		this.image = image;
+	public DrawEdit(Tool tool, PixelStore image) {
+		super(tool, image);
+	}
+
+	/**
+	 * Reads an edit that was written with {@link #write(DataOutput)}, after its type has been read.
+	 *
+	 * @param tool The tool used to make the edit
+	 * @param image The image edited
+	 * @param in The input to read the changes from
+	 * @throws IOException If the changes couldn't be read
+	 */
+	DrawEdit(Tool tool, PixelStore image, DataInput in) throws IOException {
+		super(tool, image);
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			int coord = in.readInt();
+			record(coord & 0xFFFF, coord >>> 16, in.readInt(), in.readInt());
+		}
 	}
 
 
 	/**
-	 * Undoes or redoes the edit based on the given boolean.
+	 * Undoes or redoes the edit based on the given boolean. Changes that were added left to right along a row sit next
+	 * to each other in the arrays, so each run of them is written as a single span. If the edit is compressed and
+	 * can't be inflated, nothing is changed.
 	 *
 	 * @param redo Whether or not to redo (true for redo, false for undo)
 	 */
-	public void enact (boolean redo) {
-		for (Change change : changes) {
-			image.setRGB(change.getX(), change.getY(), change.getColor(redo));
+	public synchronized void enact (boolean redo) {
+		try {
+			inflate();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		int[] colors = redo ? newRGBs : prevRGBs;
+		int start = 0;
+		for (int i = 1; i <= size; i++) {
+			if (i == size || coords[i] != coords[i - 1] + 1 || (coords[i] & 0xFFFF) == 0) {
+				image.setSpan(coords[start] & 0xFFFF, coords[start] >>> 16, i - start, colors, start);
+				start = i;
+			}
 		}
 	}
 
@@ -57,107 +148,325 @@ public class DrawEdit extends Edit {
 	 * @param newRGB The RGB value to replace it with
 	 */
 	public void addChange(int x, int y, int prevRGB, int newRGB) {
-		Change change = new Change(x, y, prevRGB, newRGB);
-		if (!changes.contains(change)) {
-			changes.add(change);
+		if (record(x, y, prevRGB, newRGB)) {
 			image.setRGB(x, y, newRGB);
-			tool.getParent().getParent().repaint();
+			tool.getCanvas().markDirty(x, y, 1, 1);
 		}
 	}
 
+	/**
+	 * Sets a horizontal span of pixels to the same color and adds a change for each one that hasn't already been
+	 * changed in this edit. The previous colors are read in one go, and each run of new changes is filled as a single
+	 * span, so pixels that were already changed keep the color they were first given.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param newRGB The RGB value to fill the span with
+	 */
+	public void addSpan(int x, int y, int length, int newRGB) {
+		int[] prevRGBs = new int[length];
+		image.getSpan(x, y, length, prevRGBs, 0);
+		int start = -1;
+		for (int i = 0; i <= length; i++) {
+			if (i < length && record(x + i, y, prevRGBs[i], newRGB)) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				image.fillSpan(x + start, y, i - start, newRGB);
+				start = -1;
+			}
+		}
+		tool.getCanvas().markDirty(x, y, length, 1);
+	}
 
 	/**
-	 * Each change is an a subsection of an edit that is the modification of a single pixel. Each DrawEdit is composed
-	 * of one or more Changes.
+	 * Stores a change in the arrays if the pixel hasn't already been changed in this edit.
 	 *
-	 * @author Tyler Packard
-	 * @version 1
-	 * @since 0.0.1
+	 * @param x The X position of the change
+	 * @param y The Y position of the change
+	 * @param prevRGB The previous RGB value at the location
+	 * @param newRGB The RGB value to replace it with
+	 * @return Whether or not the change was new
 	 */
-	private class Change {
+	private boolean record(int x, int y, int prevRGB, int newRGB) {
+		int coord = pack(x, y);
+		int slot = slotOf(coord);
+		if (table[slot] != 0) {
+			return false;
+		}
 
-		/**
-		 * The X position of the change.
-		 */
-		private int x;
+		if (size == coords.length) {
+			grow();
+			slot = slotOf(coord);
+		}
 
-		/**
-		 * The Y position of the change.
-		 */
-		private int y;
+		coords[size] = coord;
+		prevRGBs[size] = prevRGB;
+		newRGBs[size] = newRGB;
+		size++;
+		table[slot] = size;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		return true;
+	}
 
-		/**
-		 * The previous RGB value at the location.
-		 */
-		private int prevRGB;
+	/**
+	 * Returns the bounds of all of the pixels changed by the edit, or null if nothing was changed.
+	 *
+	 * @return The bounds of the changed pixels
+	 */
+	@Override
+	public Rectangle getBounds() {
+		if (size == 0) {
+			return null;
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
 
-		/**
-		 * The RGB value to replace it with.
-		 */
-		private int newRGB;
+	/**
+	 * Returns the bytes retained by the edit: the object itself plus its four int arrays, each of which has a 16 byte
+	 * header, or its compressed bytes if it's compressed.
+	 *
+	 * @return The number of bytes retained by the edit
+	 */
+	@Override
+	public synchronized long getRetainedBytes() {
+		if (compressed != null) {
+			return 64 + 16 + compressed.length;
+		}
+		return 64 + 4 * 16 + 4L * (coords.length + prevRGBs.length + newRGBs.length + table.length);
+	}
 
+	/**
+	 * Writes the number of changes followed by the coordinate, previous RGB value, and new RGB value of each one. If
+	 * the edit is compressed, the changes are inflated into temporary arrays, and the edit stays compressed.
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the edit couldn't be written
+	 */
+	@Override
+	synchronized void write(DataOutput out) throws IOException {
+		int[] coords = this.coords;
+		int[] prevRGBs = this.prevRGBs;
+		int[] newRGBs = this.newRGBs;
+		if (compressed != null) {
+			int[][] arrays = decompress(size);
+			coords = arrays[0];
+			prevRGBs = arrays[1];
+			newRGBs = arrays[2];
+		}
+		out.writeByte(DRAW);
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(coords[i]);
+			out.writeInt(prevRGBs[i]);
+			out.writeInt(newRGBs[i]);
+		}
+	}
 
-		/**
-		 * Sets the position and colors of the Change.
-		 *
-		 * @param x The X position of the change
-		 * @param y The Y position of the change
-		 * @param prevRGB The previous RGB value at the location
-		 * @param newRGB The RGB value to replace it with
-		 */
-		public Change(int x, int y, int prevRGB, int newRGB) {
-			this.x = x;
-			this.y = y;
-			this.prevRGB = prevRGB;
-			this.newRGB = newRGB;
+	/**
+	 * Compresses the changes by storing each coordinate as its difference from the one before and deflating all three
+	 * arrays, one after the other. The arrays are only read while deflating, so the edit can still be enacted in the
+	 * meantime; if changes are added to it instead, it's left uncompressed.
+	 *
+	 * @param stats The stats to record the compression in
+	 */
+	@Override
+	void compress(CompressionStats stats) {
+		int[] coords, prevRGBs, newRGBs;
+		int size;
+		synchronized (this) {
+			if (compressed != null || this.size == 0) {
+				return;
+			}
+			coords = this.coords;
+			prevRGBs = this.prevRGBs;
+			newRGBs = this.newRGBs;
+			size = this.size;
 		}
 
+		long start = System.nanoTime();
+		ByteBuffer bytes = ByteBuffer.allocate(12 * size);
+		IntBuffer ints = bytes.asIntBuffer();
+		int last = 0;
+		for (int i = 0; i < size; i++) {
+			ints.put(coords[i] - last);
+			last = coords[i];
+		}
+		ints.put(prevRGBs, 0, size);
+		ints.put(newRGBs, 0, size);
 
-		/**
-		 * Figures out whether or not the given object is equal to this change.
-		 *
-		 * @param object The object to see if equal
-		 * @return Whether or not this is equal to the object
-		 */
-		@Override
-		public boolean equals(Object object) {
-			if (object instanceof Change) {
-				Change change = (Change) object;
-				return (x == change.getX() && y == change.getY());
+		Deflater deflater = new Deflater();
+		deflater.setInput(bytes.array());
+		deflater.finish();
+		byte[] deflated = new byte[Math.max(64, 3 * size)];
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == deflated.length) {
+				deflated = Arrays.copyOf(deflated, length * 2);
 			}
-			return super.equals(object);
-		}
-
-		/**
-		 * Returns the color of the Change. Returns the new RGB value if redo is true, or the previous RGB value if it's
-		 * false.
-		 *
-		 * @param redo Whether or not to get the color for redoing the Change
-		 * @return The color of the Change
-		 */
-		public int getColor(boolean redo) {
-			if (redo) {
-				return newRGB;
+			length += deflater.deflate(deflated, length, deflated.length - length);
+		}
+		deflater.end();
+		deflated = Arrays.copyOf(deflated, length);
+		long nanos = System.nanoTime() - start;
+
+		synchronized (this) {
+			if (this.coords != coords || this.size != size) {
+				return;
 			}
-			return prevRGB;
+			compressed = deflated;
+			this.stats = stats;
+			this.coords = null;
+			this.prevRGBs = null;
+			this.newRGBs = null;
+			table = null;
+		}
+		stats.compressed(12L * size, deflated.length, nanos);
+	}
+
+	/**
+	 * Inflates the changes back into the arrays and rebuilds the hash table if the edit is compressed.
+	 *
+	 * @throws IOException If the compressed changes are corrupt, in which case the edit stays compressed
+	 */
+	private void inflate() throws IOException {
+		if (compressed == null) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(size - 1) << 1);
+		int[][] arrays = decompress(capacity);
+		coords = arrays[0];
+		prevRGBs = arrays[1];
+		newRGBs = arrays[2];
+		rehash(capacity * 2);
+		compressed = null;
+		stats.inflated(System.nanoTime() - start);
+	}
+
+	/**
+	 * Inflates the compressed changes into new arrays, without changing the edit.
+	 *
+	 * @param capacity The length of the arrays, which must be at least the number of changes
+	 * @return The coordinates, previous RGB values, and new RGB values of the changes, in that order
+	 * @throws IOException If the compressed changes are corrupt or cut short
+	 */
+	private int[][] decompress(int capacity) throws IOException {
+		byte[] bytes = new byte[12 * size];
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		try {
+			int length = 0;
+			while (length < bytes.length && !inflater.finished()) {
+				int inflated = inflater.inflate(bytes, length, bytes.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length < bytes.length) {
+				throw new IOException("The compressed changes were cut short");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+
+		int[] coords = new int[capacity];
+		int[] prevRGBs = new int[capacity];
+		int[] newRGBs = new int[capacity];
+		IntBuffer ints = ByteBuffer.wrap(bytes).asIntBuffer();
+		int last = 0;
+		for (int i = 0; i < size; i++) {
+			last += ints.get();
+			coords[i] = last;
 		}
+		ints.get(prevRGBs, 0, size);
+		ints.get(newRGBs, 0, size);
+		return new int[][] {coords, prevRGBs, newRGBs};
+	}
+
+	/**
+	 * Returns the number of pixels changed by the edit.
+	 *
+	 * @return The number of pixels changed
+	 */
+	public int size() {
+		return size;
+	}
 
-		/**
-		 * Returns the X position of the change
-		 *
-		 * @return The X position of the change
-		 */
-		public int getX() {
-			return x;
+	/**
+	 * Finds the slot of the hash table that holds the given coordinate, or the empty slot where it would be inserted
+	 * if it hasn't been changed yet.
+	 *
+	 * @param coord The packed coordinate
+	 * @return The slot for the coordinate
+	 */
+	private int slotOf(int coord) {
+		int mask = table.length - 1;
+		int slot = hash(coord) & mask;
+		while (table[slot] != 0 && coords[table[slot] - 1] != coord) {
+			slot = (slot + 1) & mask;
 		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the change arrays and rebuilds the hash table to match.
+	 */
+	private void grow() {
+		int capacity = coords.length * 2;
+		coords = Arrays.copyOf(coords, capacity);
+		prevRGBs = Arrays.copyOf(prevRGBs, capacity);
+		newRGBs = Arrays.copyOf(newRGBs, capacity);
+		rehash(capacity * 2);
+	}
 
-		/**
-		 * Returns the Y position of the change
-		 *
-		 * @return The Y position of the change
-		 */
-		public int getY() {
-			return y;
+	/**
+	 * Rebuilds the hash table from the change arrays.
+	 *
+	 * @param length The length of the new table, which must be a power of two
+	 */
+	private void rehash(int length) {
+		table = new int[length];
+		int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(coords[i]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
 		}
 	}
+
+	/**
+	 * Packs a coordinate into a single int, with the Y position in the upper 16 bits and the X position in the lower
+	 * 16 bits. Images may therefore be at most {@link #MAX_SIZE} pixels in either dimension, which the Window checks
+	 * before any image is edited.
+	 *
+	 * @param x The X position
+	 * @param y The Y position
+	 * @return The packed coordinate
+	 */
+	private static int pack(int x, int y) {
+		return (y << 16) | (x & 0xFFFF);
+	}
+
+	/**
+	 * Spreads the bits of a packed coordinate so that neighbouring pixels don't cluster in the hash table.
+	 *
+	 * @param coord The packed coordinate
+	 * @return The hash of the coordinate
+	 */
+	private static int hash(int coord) {
+		int h = coord * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
 }
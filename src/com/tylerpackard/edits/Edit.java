@@ -1,31 +1,90 @@
 package com.tylerpackard.edits;
 
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.tools.Tool;
 
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
- * An edit is an undoable and redoable action that changed something.
+ * An edit is an undoable and redoable action that changed something. Edits can be written to and read back from a
+ * stream, so that old edits can be moved out of memory.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public abstract class Edit {
+
+	/**
+	 * The type written before the contents of a DrawEdit.
+	 *
+	 * @see #write(DataOutput)
+	 */
+	static final int DRAW = 1;
+
+	/**
+	 * The type written before the contents of a FillEdit.
+	 *
+	 * @see #write(DataOutput)
+	 */
+	static final int FILL = 2;
+
+	/**
+	 * The type written before the contents of a TileEdit.
+	 *
+	 * @see #write(DataOutput)
+	 */
+	static final int TILE = 3;
+
 	/**
 	 * The tool that performed the edit.
 	 */
 	final Tool tool;
 
+	/**
+	 * The image that was edited.
+	 */
+	final PixelStore image;
+
 
 	/**
-	 * Sets the tool that made the edit to the one provided.
+	 * Sets the tool that made the edit and the image it was made on to the ones provided.
 	 *
 	 * @param tool The tool that made the edit
+	 * @param image The image that was edited
 	 */
-	public Edit(Tool tool) {
+	public Edit(Tool tool, PixelStore image) {
 		this.tool = tool;
+		this.image = image;
 	}
 
 
+	/**
+	 * Reads an edit that was written with {@link #write(DataOutput)}.
+	 *
+	 * @param in The input to read from
+	 * @param tool The tool that made the edit
+	 * @param image The image that was edited
+	 * @return The edit that was read
+	 * @throws IOException If the edit couldn't be read or is of an unknown type
+	 */
+	static Edit read(DataInput in, Tool tool, PixelStore image) throws IOException {
+		int type = in.readByte();
+		switch (type) {
+			case DRAW:
+				return new DrawEdit(tool, image, in);
+			case FILL:
+				return new FillEdit(tool, image, in);
+			case TILE:
+				return new TileEdit(tool, image, in);
+			default:
+				throw new IOException("Unknown edit type " + type);
+		}
+	}
+
 	/**
 	 * Returns the Tool that made the edit.
 	 *
@@ -41,4 +100,38 @@ public abstract class Edit {
 	 * @param redo Whether or not to redo (true for redo, false for undo)
 	 */
 	public abstract void enact(boolean redo);
+
+	/**
+	 * Returns the bounds of the area of the image changed by the edit, or null if nothing was changed.
+	 *
+	 * @return The bounds of the changed area
+	 */
+	public abstract Rectangle getBounds();
+
+	/**
+	 * Returns roughly how many bytes of memory the edit keeps alive, including its own object header. Used by the
+	 * EditManager to keep the history under its byte budget.
+	 *
+	 * @return The number of bytes retained by the edit
+	 */
+	public abstract long getRetainedBytes();
+
+	/**
+	 * Writes the edit's type followed by its contents, so that it can be read back with
+	 * {@link #read(DataInput, Tool, PixelStore)}.
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the edit couldn't be written
+	 */
+	abstract void write(DataOutput out) throws IOException;
+
+	/**
+	 * Compresses the edit's contents to save memory, if the edit knows how. Called on a background thread once the
+	 * edit is old enough that it's unlikely to be undone soon, so the edit must inflate itself again when it's enacted.
+	 * Does nothing by default.
+	 *
+	 * @param stats The stats to record the compression in
+	 */
+	void compress(CompressionStats stats) {
+	}
 }
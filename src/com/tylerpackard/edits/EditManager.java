@@ -1,33 +1,152 @@
 package com.tylerpackard.edits;
 
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.image.TiledImage;
 import com.tylerpackard.ui.Window;
 
-import java.util.Stack;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Manages all of the edits made to an image.
+ * Manages all of the edits made to an image. The history is a tree of HistoryNodes: undoing moves to the parent of the
+ * current node, redoing moves to the child it was last at, and making an edit after undoing starts a new branch
+ * instead of throwing the undone edits away. Any node can be jumped to directly. Every {@link #CHECKPOINT_INTERVAL}
+ * edits deep, a snapshot of the image is kept as a checkpoint, so a jump never has to replay more than that many
+ * edits: it either walks the tree from the current node or restores the nearest checkpoint above the target and
+ * replays from there, whichever means enacting fewer edits. Checkpoints are only kept for TiledImages, whose
+ * snapshots share their tiles with the image and are nearly free to take and restore.
+ * <p>
+ * The history is kept under a byte budget: whenever a new edit is pushed and the history retains more memory than
+ * the budget allows, the oldest edits are spilled to a journal on disk until they fit again, leaving only a small
+ * handle in memory. Spilled edits are read back when they're undone. Edits waiting to be written still count towards
+ * the history's size, and if they take it too far over budget, pushing waits for the writer to catch up. If spilling
+ * isn't enough, the oldest checkpoints are dropped, and then the oldest part of the tree is forgotten. The size of the
+ * history is kept as a running total: each node's edit is counted again whenever something changes its size, and the
+ * checkpoints are only counted again when one is taken, dropped, or restored. Edits more than a few steps old are also compressed on a
+ * background thread, and inflate themselves again if they're undone. Every edit applied to or reverted from the image
+ * is also added to the document's RecoveryJournal, so that unsaved changes survive a crash. A new edit is only added
+ * once it's sealed, when the mouse is released or something else happens to the history, since it may still be being
+ * drawn until then.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 6
  * @since 0.0.1
+ * @see HistoryNode
  */
 public class EditManager {
 
 	/**
-	 * All of the edits performed and not undone.
+	 * The byte budget used unless another one is set, which is a quarter of the largest heap the JVM will use.
 	 */
-	Stack<Edit> edits = new Stack<>();
+	public static final long DEFAULT_BYTE_BUDGET = Runtime.getRuntime().maxMemory() / 4;
 
 	/**
-	 * All of the edits that were undone and can be redone.
+	 * The number of most recent edits that are never compressed, so that undoing them is instant.
 	 */
-	Stack<Edit> redoables = new Stack<>();
+	public static final int KEEP_UNCOMPRESSED = 8;
+
+	/**
+	 * How many edits deep apart checkpoints are taken, which is the most edits a jump ever has to replay.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 64;
+
+	/**
+	 * The fraction of the byte budget that edits waiting to be spilled may take the history over it by before pushing
+	 * waits for them to be written.
+	 */
+	private static final int PENDING_SPILL_FRACTION = 4;
+
+	/**
+	 * The first state of the image that can still be reached.
+	 */
+	private HistoryNode root = new HistoryNode(null, null);
+
+	/**
+	 * The state the image is in now.
+	 */
+	private HistoryNode current = root;
+
+	/**
+	 * Every node in the tree except the root, oldest first.
+	 */
+	private final ArrayDeque<HistoryNode> nodes = new ArrayDeque<>();
 
 	/**
 	 * The parent that owns the EditManager.
 	 */
 	private Window parent;
 
+	/**
+	 * The most bytes the history may retain before old edits are dropped.
+	 */
+	private long byteBudget = DEFAULT_BYTE_BUDGET;
+
+	/**
+	 * The journal that old edits are spilled to, created the first time the history goes over budget.
+	 */
+	private SpillJournal journal;
+
+	/**
+	 * The low priority background thread that writes spilled edits to the journal.
+	 */
+	private final ExecutorService spillWriter = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "History Spill");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	/**
+	 * The low priority background thread that compresses old edits.
+	 */
+	private final ExecutorService compressor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "History Compressor");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	/**
+	 * How well old edits are being compressed.
+	 */
+	private final CompressionStats compressionStats = new CompressionStats();
+
+	/**
+	 * The journal of the document's unsaved changes, or null if it couldn't be created.
+	 */
+	private RecoveryJournal recoveryJournal;
+
+	/**
+	 * The newest node if its edit hasn't been sealed yet.
+	 */
+	private HistoryNode unsealed;
+
+	/**
+	 * The bytes retained by the edits in the tree, as they were last counted. Edits are counted again from the
+	 * compressor and spill threads too, so the totals are guarded by the EditManager.
+	 */
+	private long editBytes = 0;
+
+	/**
+	 * The bytes of spilled edits that are still in memory because they haven't been written yet, as they were last
+	 * counted.
+	 */
+	private long pendingSpillBytes = 0;
+
+	/**
+	 * The bytes retained by the checkpoints on top of the image, as they were last counted.
+	 */
+	private long checkpointBytes = 0;
+
 
 	/**
 	 * Sets the parent to the given Window.
@@ -40,46 +159,602 @@ public class EditManager {
 
 
 	/**
-	 * Undoes the last edit and moves it into the stack of redoables if there are any edits left.
+	 * Undoes the current edit and moves to its parent, if the current node isn't the root.
 	 */
 	public void undo() {
-		if (edits.size() > 0) {
-			redoables.push(edits.pop());
-			redoables.peek().enact(false);
-			parent.repaint();
+		seal();
+		if (current.parent != null) {
+			HistoryNode undone = current;
+			undone.edit.enact(false);
+			recount(undone);
+			undone.parent.redoChild = undone;
+			current = undone.parent;
+			parent.getCanvas().repaintImage(undone.edit.getBounds());
+			if (recoveryJournal != null) {
+				recoveryJournal.reverted(undone.edit);
+			}
 		}
 	}
 
 	/**
-	 * Redoes the last edit undone and moves it back into the stack of edits if there are any left.
+	 * Redoes the edit of the child the current node was last at and moves to it, if there is one.
 	 */
 	public void redo() {
-		if (redoables.size() > 0) {
-			edits.push(redoables.pop());
-			edits.peek().enact(true);
-			parent.repaint();
+		seal();
+		HistoryNode redone = current.redoChild;
+		if (redone != null) {
+			redone.edit.enact(true);
+			recount(redone);
+			current = redone;
+			parent.getCanvas().repaintImage(redone.edit.getBounds());
+			if (recoveryJournal != null) {
+				recoveryJournal.applied(redone.edit);
+			}
+			compressOld();
 		}
 	}
 
 	/**
-	 * Adds a new edit to the stack of edits and clears the stack of redoables.
+	 * Moves the image to the state of any node in the tree. The image either walks there, undoing edits up to the
+	 * deepest node both states share and redoing edits down to the target, or restores the nearest checkpoint above
+	 * the target and redoes the edits after it, whichever means enacting fewer edits. Afterwards, redoing from each
+	 * node on the way down follows the path to the target.
+	 *
+	 * @param target The node to move to
+	 */
+	public void jumpTo(HistoryNode target) {
+		seal();
+		if (target == current) {
+			return;
+		}
+
+		HistoryNode shared = commonAncestor(current, target);
+		int walk = current.depth - shared.depth + target.depth - shared.depth;
+		HistoryNode checkpoint = target;
+		while (checkpoint != null && checkpoint.checkpoint == null && target.depth - checkpoint.depth < walk) {
+			checkpoint = checkpoint.parent;
+		}
+		boolean restore = checkpoint != null && checkpoint.checkpoint != null && target.depth - checkpoint.depth < walk;
+
+		List<HistoryNode> down = pathBetween(shared, target);
+		if (recoveryJournal != null) {
+			for (HistoryNode node = current; node != shared; node = node.parent) {
+				recoveryJournal.reverted(node.edit);
+			}
+			for (HistoryNode node : down) {
+				recoveryJournal.applied(node.edit);
+			}
+		}
+
+		Rectangle damage = null;
+		if (restore) {
+			getImage().restore(checkpoint.checkpoint);
+			damage = new Rectangle(0, 0, getImage().getWidth(), getImage().getHeight());
+			down = pathBetween(checkpoint, target);
+		} else {
+			for (HistoryNode node = current; node != shared; node = node.parent) {
+				node.edit.enact(false);
+				recount(node);
+				damage = union(damage, node.edit.getBounds());
+			}
+		}
+		for (HistoryNode node : down) {
+			node.edit.enact(true);
+			recount(node);
+			damage = union(damage, node.edit.getBounds());
+		}
+		if (restore) {
+			recountCheckpoints();
+		}
+		for (HistoryNode node = target; node != shared; node = node.parent) {
+			node.parent.redoChild = node;
+		}
+
+		current = target;
+		parent.getCanvas().repaintImage(damage);
+		compressOld();
+	}
+
+	/**
+	 * Adds a new edit as a child of the current node and moves to it. The other children of the current node are kept
+	 * as branches. If the history is now over its byte budget, it's brought back under; the new edit is never spilled
+	 * or dropped, since it may still be being drawn.
 	 *
 	 * @param edit The edit to add
 	 */
 	public void push(Edit edit) {
-		redoables.clear();
-		edits.push(edit);
+		seal();
+		current = new HistoryNode(current, edit);
+		nodes.addLast(current);
+		count(current);
+		unsealed = current;
+		enforceBudget();
+		compressOld();
 	}
 
 	/**
-	 * Returns the last edit pushed if there are any.
+	 * Brings the history back under its byte budget if it's over: edits are spilled first, then checkpoints are
+	 * dropped, and then the oldest part of the tree is forgotten.
+	 */
+	private void enforceBudget() {
+		if (getSettledSize() > byteBudget && openJournal()) {
+			spillOldest();
+			if (getHistorySize() > byteBudget + byteBudget / PENDING_SPILL_FRACTION) {
+				awaitSpills();
+			}
+		}
+		if (getSettledSize() > byteBudget) {
+			dropCheckpoints();
+		}
+		if (getSettledSize() > byteBudget) {
+			pruneOldest();
+		}
+	}
+
+	/**
+	 * Seals the newest edit if it hasn't been sealed yet: it's added to the recovery journal, and if it's a multiple of
+	 * {@link #CHECKPOINT_INTERVAL} edits deep, a checkpoint of the image is taken. Called once the edit is finished, and
+	 * before anything else happens to the history.
+	 */
+	public void seal() {
+		if (unsealed != null) {
+			if (recoveryJournal != null) {
+				recoveryJournal.applied(unsealed.edit);
+			}
+			recount(unsealed);
+			if (unsealed.depth % CHECKPOINT_INTERVAL == 0 && getImage() instanceof TiledImage) {
+				unsealed.checkpoint = getImage().snapshot();
+				recountCheckpoints();
+			}
+		}
+		unsealed = null;
+	}
+
+	/**
+	 * Starts the history over for a new document. The edits of the old document are forgotten, its recovery journal
+	 * is deleted, and the new document's image becomes the root, with a checkpoint if it's a TiledImage.
 	 *
-	 * @return The last edit pushed
+	 * @param journal The recovery journal of the new document, or null if it doesn't have one
 	 */
-	public Edit peek() {
-		if (edits.size() > 0) {
-			return edits.peek();
+	public void reset(RecoveryJournal journal) {
+		clear(journal);
+		if (getImage() instanceof TiledImage) {
+			root.checkpoint = getImage().snapshot();
+			recountCheckpoints();
+		}
+	}
+
+	/**
+	 * Starts the history over for a document recovered from a journal, rebuilding it from the journal's records so the
+	 * recovered changes can still be undone. The root is the image the document was last saved as, and the records are
+	 * replayed without touching the image, which already has them: an applied edit becomes a new child of the current
+	 * node, and a reverted edit moves back up to the parent, just like undoing. A record that reverts an edit from
+	 * before the last save can't be undone past, so the history starts over after it. Nothing is added to the journal,
+	 * since the records are already in it.
+	 *
+	 * @param journal The resumed journal of the recovered document
+	 */
+	public void recover(RecoveryJournal journal) {
+		clear(journal);
+		List<Edit> edits = journal.getRecoveredEdits();
+		for (int i = 0; i < edits.size(); i++) {
+			if (journal.wasApplied(i)) {
+				current = new HistoryNode(current, edits.get(i));
+				nodes.addLast(current);
+				count(current);
+			} else if (current != root) {
+				current.parent.redoChild = current;
+				current = current.parent;
+			} else {
+				nodes.forEach(this::uncount);
+				nodes.clear();
+				root = new HistoryNode(null, null);
+				current = root;
+			}
+		}
+		journal.clearRecoveredEdits();
+		enforceBudget();
+	}
+
+	/**
+	 * Forgets every edit and checkpoint and starts an empty history, deleting the old recovery journal.
+	 *
+	 * @param journal The recovery journal of the new document, or null if it doesn't have one
+	 */
+	private void clear(RecoveryJournal journal) {
+		if (recoveryJournal != null) {
+			recoveryJournal.discard();
+		}
+		recoveryJournal = journal;
+		releaseCheckpoint(root);
+		nodes.forEach(EditManager::releaseCheckpoint);
+		nodes.forEach(this::uncount);
+		root = new HistoryNode(null, null);
+		current = root;
+		nodes.clear();
+		unsealed = null;
+		synchronized (this) {
+			checkpointBytes = 0;
+		}
+	}
+
+	/**
+	 * @return The recovery journal of the current document, or null if it doesn't have one
+	 */
+	public RecoveryJournal getRecoveryJournal() {
+		return recoveryJournal;
+	}
+
+	/**
+	 * Hands the edit that just became too old to stay uncompressed to the compressor. Only the edit
+	 * {@link #KEEP_UNCOMPRESSED} steps above the current node is checked, since the current node only moves one step
+	 * deeper at a time when pushing or redoing.
+	 */
+	private void compressOld() {
+		HistoryNode old = current;
+		for (int i = 0; i < KEEP_UNCOMPRESSED && old != null; i++) {
+			old = old.parent;
 		}
-		return null;
+		if (old != null && old.edit != null) {
+			HistoryNode node = old;
+			Edit edit = old.edit;
+			compressor.execute(() -> {
+				edit.compress(compressionStats);
+				recount(node);
+			});
+		}
+	}
+
+	/**
+	 * Spills edits to the journal, oldest first, until the history will fit in its budget once every spilled edit has
+	 * been written, or only the newest edit is left in memory. Edits are replaced by SpilledEdit handles, and handles
+	 * whose edit was read back are spilled again. Spilled edits are counted again once they've been written.
+	 */
+	private void spillOldest() {
+		for (HistoryNode node : nodes) {
+			if (getSettledSize() <= byteBudget || node == nodes.peekLast()) {
+				break;
+			}
+			Edit edit = node.edit;
+			SpilledEdit handle = edit instanceof SpilledEdit ? (SpilledEdit) edit : new SpilledEdit(edit, journal);
+			handle.spill(spillWriter, () -> recount(node));
+			node.edit = handle;
+			recount(node);
+		}
+	}
+
+	/**
+	 * Waits for every spilled edit that hasn't been written yet to be written and released.
+	 */
+	private void awaitSpills() {
+		try {
+			spillWriter.submit(() -> { }).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts counting a new node's edit towards the size of the history.
+	 *
+	 * @param node The node to count
+	 */
+	private synchronized void count(HistoryNode node) {
+		node.bytes = 0;
+		node.pendingBytes = 0;
+		recount(node);
+	}
+
+	/**
+	 * Counts a node's edit again after something may have changed its size, such as compressing, spilling, or
+	 * enacting it, and updates the running totals. Nodes that aren't counted anymore are skipped, since the compressor
+	 * and spill threads may get to them after they've been forgotten.
+	 *
+	 * @param node The node to count again
+	 */
+	private synchronized void recount(HistoryNode node) {
+		Edit edit = node.edit;
+		if (node.bytes < 0 || edit == null) {
+			return;
+		}
+		long bytes = edit.getRetainedBytes();
+		long pending = edit instanceof SpilledEdit ? ((SpilledEdit) edit).getPendingBytes() : 0;
+		editBytes += bytes - node.bytes;
+		pendingSpillBytes += pending - node.pendingBytes;
+		node.bytes = bytes;
+		node.pendingBytes = pending;
+	}
+
+	/**
+	 * Stops counting a node's edit towards the size of the history, once it's forgotten.
+	 *
+	 * @param node The node to stop counting
+	 */
+	private synchronized void uncount(HistoryNode node) {
+		if (node.bytes >= 0) {
+			editBytes -= node.bytes;
+			pendingSpillBytes -= node.pendingBytes;
+			node.bytes = -1;
+			node.pendingBytes = 0;
+		}
+	}
+
+	/**
+	 * Counts the bytes retained by every checkpoint again, which means walking all of their tiles, so it's only done
+	 * when a checkpoint is taken or dropped, or the image is restored from one.
+	 */
+	private void recountCheckpoints() {
+		List<HistoryNode> holders = checkpointNodes();
+		long bytes = 0;
+		for (long checkpoint : checkpointBytes(holders)) {
+			bytes += checkpoint;
+		}
+		synchronized (this) {
+			checkpointBytes = bytes;
+		}
+	}
+
+	/**
+	 * @return The nodes holding a checkpoint, oldest first
+	 */
+	private List<HistoryNode> checkpointNodes() {
+		List<HistoryNode> holders = new ArrayList<>();
+		if (root.checkpoint != null) {
+			holders.add(root);
+		}
+		for (HistoryNode node : nodes) {
+			if (node.checkpoint != null) {
+				holders.add(node);
+			}
+		}
+		return holders;
+	}
+
+	/**
+	 * Returns the bytes retained by the checkpoints of the given nodes, each counting only what the image and newer
+	 * checkpoints don't also hold.
+	 *
+	 * @param holders Nodes holding a checkpoint, oldest first
+	 * @return The bytes retained by each node's checkpoint
+	 * @see TiledImage#retainedBytes(List, TiledImage)
+	 */
+	private long[] checkpointBytes(List<HistoryNode> holders) {
+		if (holders.isEmpty()) {
+			return new long[0];
+		}
+		List<TiledImage> checkpoints = new ArrayList<>(holders.size());
+		for (HistoryNode node : holders) {
+			checkpoints.add((TiledImage) node.checkpoint);
+		}
+		return TiledImage.retainedBytes(checkpoints, (TiledImage) getImage());
+	}
+
+	/**
+	 * Drops checkpoints, oldest first, until the history will fit in its budget once every spilled edit has been
+	 * written, or there are none left. Jumps near those nodes have to walk the tree instead. The checkpoints' tiles are
+	 * only walked once, since dropping them oldest first releases exactly what was counted for each.
+	 */
+	private void dropCheckpoints() {
+		List<HistoryNode> holders = checkpointNodes();
+		long[] bytes = checkpointBytes(holders);
+		for (int i = 0; i < holders.size() && getSettledSize() > byteBudget; i++) {
+			releaseCheckpoint(holders.get(i));
+			synchronized (this) {
+				checkpointBytes -= bytes[i];
+			}
+		}
+	}
+
+	/**
+	 * Forgets the oldest part of the tree until the history will fit in its budget once every spilled edit has been
+	 * written, or the root's child on the way to the current node is the newest edit. Each time, that child becomes the new root: its edit is dropped, and so are the
+	 * other branches off the old root.
+	 */
+	private void pruneOldest() {
+		while (root != current && getSettledSize() > byteBudget) {
+			HistoryNode next = current;
+			while (next.parent != root) {
+				next = next.parent;
+			}
+			if (next == unsealed) {
+				return;
+			}
+
+			Set<HistoryNode> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+			dropped.add(next);
+			for (HistoryNode child : root.children) {
+				if (child != next) {
+					addBranch(child, dropped);
+				}
+			}
+			nodes.removeIf(dropped::contains);
+			boolean released = root.checkpoint != null;
+			releaseCheckpoint(root);
+			for (HistoryNode node : dropped) {
+				uncount(node);
+				if (node != next && node.checkpoint != null) {
+					releaseCheckpoint(node);
+					released = true;
+				}
+			}
+			next.edit = null;
+			next.parent = null;
+			root = next;
+			if (released) {
+				recountCheckpoints();
+			}
+		}
+	}
+
+	/**
+	 * Drops a node's checkpoint, if it has one, and releases it so the image can write to the tiles it shared in place
+	 * again.
+	 *
+	 * @param node The node whose checkpoint to drop
+	 */
+	private static void releaseCheckpoint(HistoryNode node) {
+		if (node.checkpoint != null) {
+			node.checkpoint.release();
+			node.checkpoint = null;
+		}
+	}
+
+	/**
+	 * Adds a node and every node below it to the given set.
+	 *
+	 * @param node The top of the branch
+	 * @param branch The set to add the nodes to
+	 */
+	private static void addBranch(HistoryNode node, Set<HistoryNode> branch) {
+		ArrayDeque<HistoryNode> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			HistoryNode next = stack.pop();
+			branch.add(next);
+			next.children.forEach(stack::push);
+		}
+	}
+
+	/**
+	 * Returns the deepest node that both of the given nodes are at or below.
+	 *
+	 * @param a A node
+	 * @param b Another node in the same tree
+	 * @return The common ancestor of the nodes
+	 */
+	private static HistoryNode commonAncestor(HistoryNode a, HistoryNode b) {
+		while (a.depth > b.depth) {
+			a = a.parent;
+		}
+		while (b.depth > a.depth) {
+			b = b.parent;
+		}
+		while (a != b) {
+			a = a.parent;
+			b = b.parent;
+		}
+		return a;
+	}
+
+	/**
+	 * Returns the nodes below an ancestor on the way down to a node, starting with the ancestor's child and ending
+	 * with the node.
+	 *
+	 * @param ancestor The node to start below
+	 * @param node The node to end at, which must be at or below the ancestor
+	 * @return The path from the ancestor to the node
+	 */
+	private static List<HistoryNode> pathBetween(HistoryNode ancestor, HistoryNode node) {
+		List<HistoryNode> path = new ArrayList<>(node.depth - ancestor.depth);
+		for (; node != ancestor; node = node.parent) {
+			path.add(node);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Returns the union of two areas, either of which may be null.
+	 *
+	 * @param a An area, or null
+	 * @param b Another area, or null
+	 * @return The smallest area containing both, or null if both are null
+	 */
+	private static Rectangle union(Rectangle a, Rectangle b) {
+		if (a == null) {
+			return b;
+		}
+		return b == null ? a : a.union(b);
+	}
+
+	/**
+	 * Creates the journal if it hasn't been created yet.
+	 *
+	 * @return Whether or not there is a journal to spill to
+	 */
+	private boolean openJournal() {
+		if (journal == null) {
+			try {
+				journal = new SpillJournal();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The image being edited
+	 */
+	private PixelStore getImage() {
+		return parent.getCanvas().getImage();
+	}
+
+	/**
+	 * Returns the edit that made the current state, if there is one.
+	 *
+	 * @return The current edit
+	 */
+	public Edit peek() {
+		return current.edit;
+	}
+
+	/**
+	 * @return The first state of the image that can still be reached
+	 */
+	public HistoryNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return The state the image is in now
+	 */
+	public HistoryNode getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Returns the number of bytes retained by every edit and checkpoint in the tree, from the running totals.
+	 *
+	 * @return The size of the history in bytes
+	 */
+	public synchronized long getHistorySize() {
+		return editBytes + checkpointBytes;
+	}
+
+	/**
+	 * Returns the size the history will have once every spilled edit waiting to be written has been, which is what
+	 * the budget is checked against.
+	 *
+	 * @return The settled size of the history in bytes
+	 */
+	private synchronized long getSettledSize() {
+		return editBytes - pendingSpillBytes + checkpointBytes;
+	}
+
+	/**
+	 * @return How well old edits are being compressed
+	 */
+	public CompressionStats getCompressionStats() {
+		return compressionStats;
+	}
+
+	/**
+	 * @return The most bytes the history may retain
+	 */
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	/**
+	 * Sets the most bytes the history may retain. The budget is enforced the next time an edit is pushed.
+	 *
+	 * @param byteBudget The new byte budget
+	 */
+	public void setByteBudget(long byteBudget) {
+		this.byteBudget = byteBudget;
 	}
 }
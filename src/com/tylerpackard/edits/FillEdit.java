@@ -0,0 +1,207 @@
+package com.tylerpackard.edits;
+
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.tools.Tool;
+
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * The fill edit allows a flood fill to be undone or redone. A fill always replaces one color with another, so instead of
+ * storing every pixel it only stores the two colors and a mask with one bit per pixel of the fill's bounding box. The
+ * mask is kept one row at a time, so that a bit's index never has to cover the whole bounding box; finishing the edit
+ * moves each row into the bounding box.
+ *
+ * @author Tyler Packard
+ * @version 2
+ * @since 0.0.1
+ */
+public class FillEdit extends Edit {
+
+	/**
+	 * The color that was replaced.
+	 */
+	private final int targetRGB;
+
+	/**
+	 * The color it was replaced with.
+	 */
+	private final int newRGB;
+
+	/**
+	 * The filled pixels of each row of the image while the fill is being made, or null once it's finished.
+	 */
+	private BitSet[] rows;
+
+	/**
+	 * The filled pixels of each row of the bounding box once the fill is finished, starting from its left edge. Rows
+	 * with nothing filled are null.
+	 */
+	private BitSet[] mask;
+
+	/**
+	 * The bounds of the filled pixels, inclusive.
+	 */
+	private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+
+	/**
+	 * Creates a new, empty fill edit.
+	 *
+	 * @param tool The tool used to make the edit
+	 * @param image The image edited
+	 * @param targetRGB The color being replaced
+	 * @param newRGB The color to replace it with
+	 */
+	public FillEdit(Tool tool, PixelStore image, int targetRGB, int newRGB) {
+		super(tool, image);
+		this.targetRGB = targetRGB;
+		this.newRGB = newRGB;
+		rows = new BitSet[image.getHeight()];
+	}
+
+	/**
+	 * Reads an edit that was written with {@link #write(DataOutput)}, after its type has been read.
+	 *
+	 * @param tool The tool used to make the edit
+	 * @param image The image edited
+	 * @param in The input to read the fill from
+	 * @throws IOException If the fill couldn't be read
+	 */
+	FillEdit(Tool tool, PixelStore image, DataInput in) throws IOException {
+		super(tool, image);
+		targetRGB = in.readInt();
+		newRGB = in.readInt();
+		minX = in.readInt();
+		minY = in.readInt();
+		maxX = in.readInt();
+		maxY = in.readInt();
+		mask = new BitSet[in.readInt()];
+		for (int y = 0; y < mask.length; y++) {
+			long[] words = new long[in.readInt()];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			if (words.length > 0) {
+				mask[y] = BitSet.valueOf(words);
+			}
+		}
+	}
+
+
+	/**
+	 * Adds a horizontal span that the tool has already filled to the edit.
+	 *
+	 * @param x The X position of the first pixel in the span
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 */
+	public void addSpan(int x, int y, int length) {
+		if (rows[y] == null) {
+			rows[y] = new BitSet();
+		}
+		rows[y].set(x, x + length);
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x + length - 1);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Moves the rows of the fill into its bounding box, so they start at its left edge and rows above and below it
+	 * aren't kept. No more spans can be added afterwards.
+	 */
+	public void finish() {
+		mask = new BitSet[minY > maxY ? 0 : maxY - minY + 1];
+		for (int y = 0; y < mask.length; y++) {
+			BitSet row = rows[minY + y];
+			if (row != null) {
+				mask[y] = new BitSet();
+				for (int start = row.nextSetBit(0); start >= 0; start = row.nextSetBit(start)) {
+					int end = row.nextClearBit(start);
+					mask[y].set(start - minX, end - minX);
+					start = end;
+				}
+			}
+		}
+		rows = null;
+	}
+
+	/**
+	 * Undoes or redoes the fill by writing each run of filled pixels as a single span of the old or new color.
+	 *
+	 * @param redo Whether or not to redo (true for redo, false for undo)
+	 */
+	@Override
+	public void enact(boolean redo) {
+		int rgb = redo ? newRGB : targetRGB;
+		for (int y = 0; y < mask.length; y++) {
+			BitSet row = mask[y];
+			if (row != null) {
+				for (int start = row.nextSetBit(0); start >= 0; start = row.nextSetBit(start)) {
+					int end = row.nextClearBit(start);
+					image.fillSpan(minX + start, minY + y, end - start, rgb);
+					start = end;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the bounds of all of the filled pixels, or null if nothing was filled.
+	 *
+	 * @return The bounds of the filled pixels
+	 */
+	@Override
+	public Rectangle getBounds() {
+		if (minX > maxX) {
+			return null;
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+	/**
+	 * Returns the bytes retained by the edit: the object itself, and the masks of its rows.
+	 *
+	 * @return The number of bytes retained by the edit
+	 */
+	@Override
+	public long getRetainedBytes() {
+		BitSet[] masks = rows != null ? rows : mask;
+		long bytes = 64 + 16 + 4L * masks.length;
+		for (BitSet row : masks) {
+			if (row != null) {
+				bytes += 48 + row.size() / 8;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the two colors, the bounds, and the mask of each row of the fill.
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the edit couldn't be written
+	 */
+	@Override
+	void write(DataOutput out) throws IOException {
+		out.writeByte(FILL);
+		out.writeInt(targetRGB);
+		out.writeInt(newRGB);
+		out.writeInt(minX);
+		out.writeInt(minY);
+		out.writeInt(maxX);
+		out.writeInt(maxY);
+		out.writeInt(mask.length);
+		for (BitSet row : mask) {
+			long[] words = row == null ? new long[0] : row.toLongArray();
+			out.writeInt(words.length);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+		}
+	}
+}
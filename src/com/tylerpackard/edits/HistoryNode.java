@@ -0,0 +1,110 @@
+package com.tylerpackard.edits;
+
+import com.tylerpackard.image.PixelStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A HistoryNode is one state of the image in the EditManager's history tree. Every node but the root holds the edit
+ * that turns its parent's state into its own, and making a new edit after undoing adds a new child instead of throwing
+ * the old ones away. Some nodes also hold a checkpoint, a snapshot of the image in their state, so that distant nodes
+ * can be reached without replaying every edit on the way.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see EditManager
+ */
+public class HistoryNode {
+
+	/**
+	 * The node this one was made from, or null if it's the root.
+	 */
+	HistoryNode parent;
+
+	/**
+	 * The nodes made from this one, oldest first.
+	 */
+	final List<HistoryNode> children = new ArrayList<>(1);
+
+	/**
+	 * The child that redoing moves to: the one most recently made or moved back from.
+	 */
+	HistoryNode redoChild;
+
+	/**
+	 * The edit that turns the parent's state into this one, or null if this is the root.
+	 */
+	Edit edit;
+
+	/**
+	 * A snapshot of the image in this node's state, or null if there isn't one.
+	 */
+	PixelStore checkpoint;
+
+	/**
+	 * How many edits this node is from the root when it was made.
+	 */
+	final int depth;
+
+	/**
+	 * The bytes retained by the node's edit when it was last counted towards the size of the history, or -1 if it
+	 * isn't counted.
+	 */
+	long bytes = -1;
+
+	/**
+	 * The bytes of the node's edit that were waiting to be released by a spill when it was last counted.
+	 */
+	long pendingBytes = 0;
+
+
+	/**
+	 * Creates a new node and adds it to its parent's children.
+	 *
+	 * @param parent The node the edit was made from, or null for the root
+	 * @param edit The edit that turns the parent's state into this one, or null for the root
+	 */
+	HistoryNode(HistoryNode parent, Edit edit) {
+		this.parent = parent;
+		this.edit = edit;
+		if (parent != null) {
+			depth = parent.depth + 1;
+			parent.children.add(this);
+			parent.redoChild = this;
+		} else {
+			depth = 0;
+		}
+	}
+
+
+	/**
+	 * @return The node this one was made from, or null if it's the root
+	 */
+	public HistoryNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return The nodes made from this one, oldest first
+	 */
+	public List<HistoryNode> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * @return The edit that turns the parent's state into this one, or null if this is the root
+	 */
+	public Edit getEdit() {
+		return edit;
+	}
+
+	/**
+	 * @return Whether or not the node holds a snapshot of the image
+	 */
+	public boolean hasCheckpoint() {
+		return checkpoint != null;
+	}
+}
@@ -0,0 +1,658 @@
+package com.tylerpackard.edits;
+
+import com.tylerpackard.image.MappedImage;
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.image.TiledImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The RecoveryJournal keeps the unsaved changes to a document on disk so that they survive a crash. The journal starts
+ * with a header naming the image the document was last saved as, or its size if it was never saved, and whether its
+ * pixels are kept on disk, followed by a record for every edit applied to or reverted from the image since. Undoing,
+ * redoing, and jumping around the history are all recorded as the edits they apply or revert, so the journal doesn't
+ * need to know the shape of the history to rebuild the pixels. Records are written on a background thread, and the
+ * file is only forced to the disk at most every {@link #COMMIT_INTERVAL} milliseconds, so a burst of edits shares
+ * one sync. Each record has a checksum, so a record that was only half written when the program died is ignored.
+ * <p>
+ * When the document is saved, the records the saved image already contains are cut from the journal and the header
+ * is pointed at the saved image. On the next launch, any journal that wasn't cleaned up can be resumed, which rebuilds
+ * the document by loading its base image into the same kind of PixelStore it was edited in, so a document too big for
+ * the heap comes back on disk, and replaying the records over it. The replayed edits are kept, so that the
+ * EditManager can rebuild the history from them and the recovered changes can still be undone.
+ *
+ * @author Tyler Packard
+ * @version 4
+ * @since 0.0.1
+ */
+public class RecoveryJournal {
+
+	/**
+	 * The directory journals are kept in.
+	 */
+	public static final File DIRECTORY = new File(System.getProperty("user.home"), ".pixeleditor" + File.separator + "recovery");
+
+	/**
+	 * The most milliseconds written records may wait before they're forced to the disk.
+	 */
+	public static final long COMMIT_INTERVAL = 250;
+
+	/**
+	 * The first int of every journal file.
+	 */
+	private static final int MAGIC = 0x50584A52;
+
+	/**
+	 * The types of records in the journal: an edit that was applied, or an edit that was reverted.
+	 */
+	private static final byte APPLY = 1, REVERT = 2;
+
+	/**
+	 * The journal file.
+	 */
+	private final File file;
+
+	/**
+	 * The size of the document.
+	 */
+	private final int width, height;
+
+	/**
+	 * Whether or not the document keeps its pixels on disk in a MappedImage.
+	 */
+	private final boolean mapped;
+
+	/**
+	 * The image the document was rebuilt into when the journal was resumed, or null if the journal is new.
+	 */
+	private PixelStore recoveredImage;
+
+	/**
+	 * The edits replayed when the journal was resumed, in the order they were recorded, or null if the journal is new.
+	 */
+	private List<Edit> recoveredEdits;
+
+	/**
+	 * Which of the recovered edits were applied, by index. The rest were reverted.
+	 */
+	private BitSet recoveredApplied;
+
+	/**
+	 * The image the document was last saved as, or null if it hasn't been saved.
+	 */
+	private volatile File base;
+
+	/**
+	 * The channel used to write to the journal file. Only used by the writer thread once the journal is created.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The lock that stops other instances of the program from resuming the journal while it's being written.
+	 */
+	private FileLock lock;
+
+	/**
+	 * The writes waiting for the writer thread.
+	 */
+	private final LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+
+	/**
+	 * The offset of each record still in the file, starting with record number {@link #firstRecord}.
+	 */
+	private long[] offsets = new long[64];
+
+	/**
+	 * The number of the first record still in the file. Earlier records were cut when the document was saved.
+	 */
+	private int firstRecord = 0;
+
+	/**
+	 * The number of records written.
+	 */
+	private int written = 0;
+
+	/**
+	 * The offset where the next record will be written.
+	 */
+	private long end;
+
+	/**
+	 * The number of records handed to the writer thread.
+	 */
+	private int enqueued = 0;
+
+	/**
+	 * Whether or not the writer thread should keep running.
+	 */
+	private boolean running = true;
+
+
+	/**
+	 * Creates a new, empty journal for a document.
+	 *
+	 * @param base The image the document was opened from, or null if it's new
+	 * @param width The width of the document
+	 * @param height The height of the document
+	 * @param mapped Whether or not the document keeps its pixels on disk in a MappedImage
+	 * @throws IOException If the journal file couldn't be created
+	 */
+	public RecoveryJournal(File base, int width, int height, boolean mapped) throws IOException {
+		this.base = base;
+		this.width = width;
+		this.height = height;
+		this.mapped = mapped;
+		DIRECTORY.mkdirs();
+		file = File.createTempFile("document", ".journal", DIRECTORY);
+		openChannel();
+
+		byte[] header = header(base, width, height, mapped);
+		end = header.length;
+		tasks.add(() -> write(ByteBuffer.wrap(header), 0));
+		startWriter();
+	}
+
+	/**
+	 * Creates a journal that continues an existing file whose records have already been read.
+	 *
+	 * @param file The journal file
+	 * @param channel The open channel to the file
+	 * @param lock The lock held on the file
+	 * @param base The image the document was last saved as, or null
+	 * @param width The width of the document
+	 * @param height The height of the document
+	 * @param mapped Whether or not the document keeps its pixels on disk
+	 * @param offsets The offset of each record in the file
+	 * @param count The number of records in the file
+	 * @param end The offset after the last record
+	 */
+	private RecoveryJournal(File file, FileChannel channel, FileLock lock, File base, int width, int height,
+			boolean mapped, long[] offsets, int count, long end) {
+		this.file = file;
+		this.channel = channel;
+		this.lock = lock;
+		this.base = base;
+		this.width = width;
+		this.height = height;
+		this.mapped = mapped;
+		this.offsets = offsets;
+		this.written = count;
+		this.enqueued = count;
+		this.end = end;
+		startWriter();
+	}
+
+
+	/**
+	 * Returns the journals left behind by earlier runs of the program that have unsaved changes, newest first.
+	 * Journals without any changes are deleted, and journals that are still being written by another instance of the
+	 * program are skipped.
+	 *
+	 * @return The journals that can be resumed
+	 */
+	public static List<File> findJournals() {
+		List<File> journals = new ArrayList<>();
+		File[] files = DIRECTORY.listFiles((dir, name) -> name.endsWith(".journal"));
+		if (files == null) {
+			return journals;
+		}
+		Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+
+		for (File candidate : files) {
+			boolean empty;
+			try (FileChannel channel = FileChannel.open(candidate.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				FileLock lock;
+				try {
+					lock = channel.tryLock();
+				} catch (OverlappingFileLockException e) {
+					lock = null;
+				}
+				if (lock == null) {
+					continue;
+				}
+				try {
+					DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+					empty = channel.size() <= readHeaderLength(in);
+				} catch (IOException e) {
+					empty = true;
+				}
+				lock.release();
+			} catch (IOException e) {
+				e.printStackTrace();
+				continue;
+			}
+			if (empty) {
+				candidate.delete();
+			} else {
+				journals.add(candidate);
+			}
+		}
+		return journals;
+	}
+
+	/**
+	 * Returns a short description of the document a journal belongs to, so the user can tell journals apart: the name
+	 * of the image it was last saved as, or its size if it was never saved, and when it was last changed.
+	 *
+	 * @param file The journal
+	 * @return The description of the journal's document
+	 */
+	public static String describe(File file) {
+		String changed = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT).format(new Date(file.lastModified()));
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " isn't a recovery journal");
+			}
+			int width = in.readInt();
+			int height = in.readInt();
+			in.readBoolean();
+			String path = in.readUTF();
+			String name = path.isEmpty() ? "Untitled (" + width + " x " + height + ")" : new File(path).getName();
+			return name + ", changed " + changed;
+		} catch (IOException e) {
+			return file.getName() + ", changed " + changed;
+		}
+	}
+
+	/**
+	 * Resumes a journal left behind by an earlier run. The document is rebuilt by loading its base image, or creating
+	 * a blank one if it was never saved, in the kind of PixelStore the document was edited in, and replaying every
+	 * complete record over it. Anything after the last complete record is cut off, and new records are added after it.
+	 *
+	 * @param file The journal to resume
+	 * @return The resumed journal, whose recovered image holds the rebuilt document
+	 * @throws IOException If the journal is locked or invalid, or its base image couldn't be read
+	 */
+	public static RecoveryJournal resume(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				throw new IOException(file + " is being used by another instance");
+			}
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " isn't a recovery journal");
+			}
+			int width = in.readInt();
+			int height = in.readInt();
+			boolean mapped = in.readBoolean();
+			String path = in.readUTF();
+			File base = path.isEmpty() ? null : new File(path);
+			long position = 13 + 2 + utfLength(path);
+
+			PixelStore image;
+			if (base != null) {
+				BufferedImage loaded = ImageIO.read(base);
+				if (loaded == null) {
+					throw new IOException("Couldn't read " + base);
+				}
+				image = mapped ? MappedImage.fromImage(loaded) : TiledImage.fromImage(loaded);
+			} else {
+				image = mapped ? new MappedImage(width, height) : new TiledImage(width, height);
+			}
+
+			long[] offsets = new long[64];
+			int count = 0;
+			List<Edit> edits = new ArrayList<>();
+			BitSet applied = new BitSet();
+			CRC32 crc = new CRC32();
+			while (position + 8 <= channel.size()) {
+				byte[] payload;
+				try {
+					int length = in.readInt();
+					if (length < 2 || position + 8 + length > channel.size()) {
+						break;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+					crc.reset();
+					crc.update(payload);
+					if (in.readInt() != (int) crc.getValue()) {
+						break;
+					}
+				} catch (EOFException e) {
+					break;
+				}
+
+				Edit edit = Edit.read(new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1)), null, image);
+				edit.enact(payload[0] == APPLY);
+				applied.set(edits.size(), payload[0] == APPLY);
+				edits.add(edit);
+
+				if (count == offsets.length) {
+					offsets = Arrays.copyOf(offsets, count * 2);
+				}
+				offsets[count++] = position;
+				position += 8 + payload.length;
+			}
+			channel.truncate(position);
+
+			RecoveryJournal journal = new RecoveryJournal(file, channel, lock, base, width, height, mapped, offsets, count,
+					position);
+			journal.recoveredImage = image;
+			journal.recoveredEdits = edits;
+			journal.recoveredApplied = applied;
+			return journal;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Adds a record of an edit that was made or redone. The edit mustn't change afterwards, since it's written on the
+	 * writer thread.
+	 *
+	 * @param edit The edit applied to the image
+	 */
+	public void applied(Edit edit) {
+		enqueued++;
+		tasks.add(() -> append(APPLY, edit));
+	}
+
+	/**
+	 * Adds a record of an edit that was undone.
+	 *
+	 * @param edit The edit reverted from the image
+	 */
+	public void reverted(Edit edit) {
+		enqueued++;
+		tasks.add(() -> append(REVERT, edit));
+	}
+
+	/**
+	 * Returns the number of records added so far. Taken when the document is saved, so that the journal can later be
+	 * cut back to the records the saved image doesn't contain.
+	 *
+	 * @return The number of records added
+	 * @see #saved(File, int)
+	 */
+	public int mark() {
+		return enqueued;
+	}
+
+	/**
+	 * Notes that the document was saved. The records before the given mark are cut from the journal, since the saved
+	 * image already contains them, and the saved image becomes the journal's base. The new file is written next to
+	 * the journal and moved over it, so the journal stays valid even if the program dies partway. May be called from
+	 * any thread.
+	 *
+	 * @param saved The file the document was saved to
+	 * @param mark The mark taken when the document's pixels were saved
+	 * @see #mark()
+	 */
+	public void saved(File saved, int mark) {
+		tasks.add(() -> {
+			if (mark < firstRecord) {
+				return;
+			}
+			long from = mark < written ? offsets[mark - firstRecord] : end;
+			byte[] header = header(saved, width, height, mapped);
+
+			File temp = new File(DIRECTORY, file.getName() + ".tmp");
+			try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				out.write(ByteBuffer.wrap(header));
+				for (long position = from; position < end; ) {
+					position += channel.transferTo(position, end - position, out);
+				}
+				out.force(false);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			lock.release();
+			channel.close();
+			openChannel();
+
+			long shift = header.length - from;
+			int kept = written - mark;
+			System.arraycopy(offsets, mark - firstRecord, offsets, 0, kept);
+			for (int i = 0; i < kept; i++) {
+				offsets[i] += shift;
+			}
+			firstRecord = mark;
+			end += shift;
+			base = saved;
+		});
+	}
+
+	/**
+	 * Stops writing and deletes the journal, once everything already added has been written. Used when the document
+	 * is closed and its changes aren't needed anymore.
+	 */
+	public void discard() {
+		tasks.add(() -> {
+			running = false;
+			lock.release();
+			channel.close();
+			file.delete();
+		});
+	}
+
+	/**
+	 * @return The image the document was rebuilt into when the journal was resumed, or null if the journal is new
+	 */
+	public PixelStore getRecoveredImage() {
+		return recoveredImage;
+	}
+
+	/**
+	 * @return The edits replayed when the journal was resumed, in the order they were recorded, or null if it's new
+	 */
+	List<Edit> getRecoveredEdits() {
+		return recoveredEdits;
+	}
+
+	/**
+	 * Returns whether a recovered edit was applied to the image or reverted from it.
+	 *
+	 * @param index The index of the edit in {@link #getRecoveredEdits()}
+	 * @return True if the edit was applied, or false if it was reverted
+	 */
+	boolean wasApplied(int index) {
+		return recoveredApplied.get(index);
+	}
+
+	/**
+	 * Lets go of the recovered edits once the history has been rebuilt from them.
+	 */
+	void clearRecoveredEdits() {
+		recoveredEdits = null;
+		recoveredApplied = null;
+	}
+
+	/**
+	 * @return The image the document was last saved as, or null if it hasn't been saved
+	 */
+	public File getBase() {
+		return base;
+	}
+
+	/**
+	 * Opens the channel to the journal file and locks it.
+	 *
+	 * @throws IOException If the file couldn't be opened or is locked by another instance
+	 */
+	private void openChannel() throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		lock = channel.tryLock();
+		if (lock == null) {
+			channel.close();
+			throw new IOException(file + " is being used by another instance");
+		}
+	}
+
+	/**
+	 * Writes a record to the end of the journal. Runs on the writer thread.
+	 *
+	 * @param type The type of the record
+	 * @param edit The edit to write after the type
+	 * @throws IOException If the record couldn't be written
+	 */
+	private void append(byte type, Edit edit) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(type);
+		edit.write(new DataOutputStream(bytes));
+		byte[] payload = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+		record.putInt(payload.length);
+		record.put(payload);
+		record.putInt((int) crc.getValue());
+		record.flip();
+
+		if (written - firstRecord == offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		offsets[written - firstRecord] = end;
+		write(record, end);
+		end += 8 + payload.length;
+		written++;
+	}
+
+	/**
+	 * Writes all of a buffer to the journal file at the given offset.
+	 *
+	 * @param buffer The bytes to write
+	 * @param position The offset to write them at
+	 * @throws IOException If the bytes couldn't be written
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Starts the thread that writes the records. It runs writes as they're added, and forces the file to the disk once
+	 * nothing else has been added for a while or {@link #COMMIT_INTERVAL} has passed since the last time.
+	 */
+	private void startWriter() {
+		Thread writer = new Thread(() -> {
+			long lastForce = 0;
+			boolean dirty = false;
+			while (running) {
+				try {
+					Task task;
+					if (dirty) {
+						long wait = lastForce + COMMIT_INTERVAL - System.currentTimeMillis();
+						task = tasks.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+					} else {
+						task = tasks.take();
+					}
+					if (task != null) {
+						task.run();
+						dirty = running;
+					}
+					if (dirty && System.currentTimeMillis() - lastForce >= COMMIT_INTERVAL) {
+						channel.force(false);
+						lastForce = System.currentTimeMillis();
+						dirty = false;
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "Recovery Journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Returns the header of a journal.
+	 *
+	 * @param base The image the document was last saved as, or null
+	 * @param width The width of the document
+	 * @param height The height of the document
+	 * @param mapped Whether or not the document keeps its pixels on disk
+	 * @return The bytes of the header
+	 * @throws IOException If the header couldn't be written
+	 */
+	private static byte[] header(File base, int width, int height, boolean mapped) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeBoolean(mapped);
+		out.writeUTF(base == null ? "" : base.getAbsolutePath());
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the header of a journal and returns its length.
+	 *
+	 * @param in The input to read the header from
+	 * @return The length of the header in bytes
+	 * @throws IOException If the header couldn't be read or isn't a journal header
+	 */
+	private static long readHeaderLength(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a recovery journal");
+		}
+		in.readInt();
+		in.readInt();
+		in.readBoolean();
+		return 13 + 2 + utfLength(in.readUTF());
+	}
+
+	/**
+	 * Returns the number of bytes a string takes up when written with {@link DataOutput#writeUTF(String)}, not
+	 * counting the length before it.
+	 *
+	 * @param string The string
+	 * @return The length of the string in modified UTF-8
+	 */
+	private static int utfLength(String string) {
+		int length = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				length++;
+			} else if (c > 0x07FF) {
+				length += 3;
+			} else {
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * A write for the writer thread to run.
+	 */
+	private interface Task {
+
+		/**
+		 * Runs the write.
+		 *
+		 * @throws IOException If the write failed
+		 */
+		void run() throws IOException;
+	}
+}
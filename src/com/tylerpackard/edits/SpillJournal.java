@@ -0,0 +1,85 @@
+package com.tylerpackard.edits;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * The SpillJournal is an append-only scratch file that old edits are written to when the history runs out of memory.
+ * Each record is appended to the end of the file, and an index of record offsets is kept in memory so that any record
+ * can be read back with a single seek. The file is deleted when the program exits.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see SpilledEdit
+ */
+class SpillJournal {
+
+	/**
+	 * The scratch file.
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * The offset of each record in the file, indexed by record number.
+	 */
+	private long[] offsets = new long[64];
+
+	/**
+	 * The number of records appended.
+	 */
+	private int count = 0;
+
+	/**
+	 * The offset where the next record will be written.
+	 */
+	private long end = 0;
+
+
+	/**
+	 * Creates a new, empty journal in a temporary file.
+	 *
+	 * @throws IOException If the file couldn't be created
+	 */
+	SpillJournal() throws IOException {
+		File scratch = File.createTempFile("history", ".journal");
+		scratch.deleteOnExit();
+		file = new RandomAccessFile(scratch, "rw");
+	}
+
+
+	/**
+	 * Appends a record to the end of the journal.
+	 *
+	 * @param record The bytes of the record
+	 * @return The number of the record, used to read it back
+	 * @throws IOException If the record couldn't be written
+	 */
+	synchronized int append(byte[] record) throws IOException {
+		if (count == offsets.length) {
+			offsets = Arrays.copyOf(offsets, count * 2);
+		}
+		file.seek(end);
+		file.writeInt(record.length);
+		file.write(record);
+		offsets[count] = end;
+		end += 4 + record.length;
+		return count++;
+	}
+
+	/**
+	 * Reads a record back from the journal.
+	 *
+	 * @param number The number of the record
+	 * @return The bytes of the record
+	 * @throws IOException If the record couldn't be read
+	 */
+	synchronized byte[] read(int number) throws IOException {
+		file.seek(offsets[number]);
+		byte[] record = new byte[file.readInt()];
+		file.readFully(record);
+		return record;
+	}
+}
@@ -0,0 +1,179 @@
+package com.tylerpackard.edits;
+
+import java.awt.*;
+import java.io.*;
+import java.util.concurrent.Executor;
+
+/**
+ * A SpilledEdit is a lightweight handle that stands in for an edit that has been moved out of memory into a
+ * SpillJournal. The edit is written on a background thread; until that finishes the handle keeps the edit in memory,
+ * and once it's done the handle only remembers where the edit was written. When the edit is enacted it's read back
+ * from the journal and kept in memory again until the handle is spilled once more. An edit waiting to be written
+ * still counts as retained, since it's still in memory. If the write fails, the edit just stays in memory for good,
+ * and is counted like any other edit that hasn't been spilled.
+ *
+ * @author Tyler Packard
+ * @version 3
+ * @since 0.0.1
+ * @see SpillJournal
+ */
+class SpilledEdit extends Edit {
+
+	/**
+	 * The bytes retained by the handle itself, including its bounds.
+	 */
+	private static final long HANDLE_BYTES = 96;
+
+	/**
+	 * The journal the edit is written to.
+	 */
+	private final SpillJournal journal;
+
+	/**
+	 * The bounds of the edit, kept so they don't need the edit to be read back.
+	 */
+	private final Rectangle bounds;
+
+	/**
+	 * The edit while it's in memory, or null once it has been written and released.
+	 */
+	private volatile Edit edit;
+
+	/**
+	 * The number of the edit's record in the journal, or -1 if it hasn't been written yet.
+	 */
+	private volatile int record = -1;
+
+	/**
+	 * Whether or not the edit should be released from memory as soon as it has been written.
+	 */
+	private volatile boolean spilled = false;
+
+	/**
+	 * Whether or not writing the edit failed, in which case it's kept in memory and never spilled again.
+	 */
+	private volatile boolean failed = false;
+
+
+	/**
+	 * Creates a handle for the given edit. Nothing is written until the handle is spilled.
+	 *
+	 * @param edit The edit to stand in for
+	 * @param journal The journal to write the edit to
+	 */
+	SpilledEdit(Edit edit, SpillJournal journal) {
+		super(edit.tool, edit.image);
+		this.edit = edit;
+		this.journal = journal;
+		bounds = edit.getBounds();
+	}
+
+
+	/**
+	 * Releases the edit from memory. If the edit hasn't been written yet, it's written on the given executor first and
+	 * released once the write finishes, so the caller never waits on the disk. Nothing happens if an earlier write
+	 * failed.
+	 *
+	 * @param writer The executor to write the edit on
+	 * @param written Run on the executor once the edit has been written, or has failed to be, so its size can be
+	 *                counted again
+	 */
+	void spill(Executor writer, Runnable written) {
+		if (failed) {
+			return;
+		}
+		spilled = true;
+		if (record >= 0) {
+			edit = null;
+			return;
+		}
+
+		final Edit pending = edit;
+		writer.execute(() -> {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				pending.write(new DataOutputStream(bytes));
+				record = journal.append(bytes.toByteArray());
+				if (spilled) {
+					edit = null;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				failed = true;
+				spilled = false;
+			}
+			written.run();
+		});
+	}
+
+	/**
+	 * Reads the edit back from the journal if it isn't in memory, then undoes or redoes it. The edit stays in memory
+	 * until the handle is spilled again.
+	 *
+	 * @param redo Whether or not to redo (true for redo, false for undo)
+	 */
+	@Override
+	public void enact(boolean redo) {
+		spilled = false;
+		Edit loaded = edit;
+		if (loaded == null) {
+			try {
+				loaded = Edit.read(new DataInputStream(new ByteArrayInputStream(journal.read(record))), tool, image);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			edit = loaded;
+		}
+		loaded.enact(redo);
+	}
+
+	/**
+	 * Returns the bounds of the edit.
+	 *
+	 * @return The bounds of the changed area
+	 */
+	@Override
+	public Rectangle getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Returns the bytes retained by the handle, plus those of the edit if it's in memory, including while it's waiting
+	 * to be written.
+	 *
+	 * @return The number of bytes retained by the edit
+	 */
+	@Override
+	public long getRetainedBytes() {
+		Edit loaded = edit;
+		return HANDLE_BYTES + (loaded == null ? 0 : loaded.getRetainedBytes());
+	}
+
+	/**
+	 * Returns the bytes of the edit that will be released once it has been written, if it has been spilled but the
+	 * write hasn't finished yet. An edit whose write failed is never released, so none of it is pending.
+	 *
+	 * @return The number of bytes waiting to be released
+	 */
+	long getPendingBytes() {
+		Edit loaded = edit;
+		return loaded == null || !spilled || failed || record >= 0 ? 0 : loaded.getRetainedBytes();
+	}
+
+	/**
+	 * Writes the edit, reading it back from the journal first if it isn't in memory.
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the edit couldn't be read or written
+	 */
+	@Override
+	void write(DataOutput out) throws IOException {
+		Edit loaded = edit;
+		if (loaded != null) {
+			loaded.write(out);
+		} else {
+			out.write(journal.read(record));
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package com.tylerpackard.edits;
+
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.image.TiledImage;
+import com.tylerpackard.tools.Tool;
+
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The tile edit allows operations that change large areas of the image to be undone or redone by snapshotting whole
+ * tiles instead of recording each pixel. Before an area is changed, the tool touches it, which saves a compressed copy
+ * of every tile in the area that hasn't been saved yet. Finishing the edit saves a compressed copy of the same tiles
+ * after the change. Undoing or redoing just copies the saved tiles back into the image, so the cost of the edit depends
+ * on how many tiles were touched rather than on how many pixels. One Deflater and one set of buffers are used for every
+ * tile saved while the edit is being made, and they're let go of once it's finished.
+ *
+ * @author Tyler Packard
+ * @version 2
+ * @since 0.0.1
+ */
+public class TileEdit extends Edit {
+
+	/**
+	 * The number of pixels in each tile.
+	 */
+	private static final int TILE_PIXELS = TiledImage.TILE_SIZE * TiledImage.TILE_SIZE;
+
+	/**
+	 * The number of tiles in each row of the image.
+	 */
+	private final int tilesX;
+
+	/**
+	 * The tiles that have been saved, by index.
+	 */
+	private final BitSet touched = new BitSet();
+
+	/**
+	 * The index of each saved tile, in the order they were touched.
+	 */
+	private int[] tiles = new int[16];
+
+	/**
+	 * The compressed pixels of each saved tile before the edit.
+	 */
+	private byte[][] before = new byte[16][];
+
+	/**
+	 * The compressed pixels of each saved tile after the edit, filled in when the edit is finished.
+	 */
+	private byte[][] after = new byte[16][];
+
+	/**
+	 * The number of saved tiles.
+	 */
+	private int count = 0;
+
+	/**
+	 * The bounds of all of the touched areas, inclusive.
+	 */
+	private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+	/**
+	 * The array tiles are read into while the edit is being made, or null once it's finished.
+	 */
+	private int[] scratch = new int[TILE_PIXELS];
+
+	/**
+	 * The bytes of the tile being compressed, or null once the edit is finished.
+	 */
+	private ByteBuffer tileBytes = ByteBuffer.allocate(TILE_PIXELS * 4);
+
+	/**
+	 * The buffer tiles are compressed into, which doubles in size whenever a tile doesn't fit, or null once the edit
+	 * is finished.
+	 */
+	private byte[] deflated = new byte[4096];
+
+	/**
+	 * The deflater tiles are compressed with, created when the first tile is saved and ended once the edit is
+	 * finished.
+	 */
+	private Deflater deflater;
+
+
+	/**
+	 * Creates a new edit that hasn't saved any tiles yet.
+	 *
+	 * @param tool The tool used to make the edit
+	 * @param image The image edited
+	 */
+	public TileEdit(Tool tool, PixelStore image) {
+		super(tool, image);
+		tilesX = (image.getWidth() + TiledImage.TILE_SIZE - 1) / TiledImage.TILE_SIZE;
+	}
+
+	/**
+	 * Reads an edit that was written with {@link #write(DataOutput)}, after its type has been read.
+	 *
+	 * @param tool The tool used to make the edit
+	 * @param image The image edited
+	 * @param in The input to read the tiles from
+	 * @throws IOException If the tiles couldn't be read
+	 */
+	TileEdit(Tool tool, PixelStore image, DataInput in) throws IOException {
+		this(tool, image);
+		minX = in.readInt();
+		minY = in.readInt();
+		maxX = in.readInt();
+		maxY = in.readInt();
+		count = in.readInt();
+		tiles = new int[count];
+		before = new byte[count][];
+		after = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			tiles[i] = in.readInt();
+			before[i] = new byte[in.readInt()];
+			in.readFully(before[i]);
+			after[i] = new byte[in.readInt()];
+			in.readFully(after[i]);
+			touched.set(tiles[i]);
+		}
+		scratch = null;
+		tileBytes = null;
+		deflated = null;
+	}
+
+
+	/**
+	 * Saves every tile in the given area that hasn't been saved yet. Must be called before the area is changed.
+	 *
+	 * @param x The X position of the area
+	 * @param y The Y position of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 */
+	public void touch(int x, int y, int width, int height) {
+		int tx2 = (x + width - 1) / TiledImage.TILE_SIZE;
+		int ty2 = (y + height - 1) / TiledImage.TILE_SIZE;
+		for (int ty = y / TiledImage.TILE_SIZE; ty <= ty2; ty++) {
+			for (int tx = x / TiledImage.TILE_SIZE; tx <= tx2; tx++) {
+				int index = ty * tilesX + tx;
+				if (!touched.get(index)) {
+					touched.set(index);
+					if (count == tiles.length) {
+						tiles = Arrays.copyOf(tiles, count * 2);
+						before = Arrays.copyOf(before, count * 2);
+						after = Arrays.copyOf(after, count * 2);
+					}
+					image.readTile(tx, ty, scratch);
+					tiles[count] = index;
+					before[count] = compress(scratch);
+					count++;
+				}
+			}
+		}
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x + width - 1);
+		maxY = Math.max(maxY, y + height - 1);
+	}
+
+	/**
+	 * Saves the state of every touched tile after the change and lets go of the deflater and buffers. No more areas
+	 * can be touched afterwards.
+	 */
+	public void finish() {
+		try {
+			for (int i = 0; i < count; i++) {
+				image.readTile(tiles[i] % tilesX, tiles[i] / tilesX, scratch);
+				after[i] = compress(scratch);
+			}
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+				deflater = null;
+			}
+			scratch = null;
+			tileBytes = null;
+			deflated = null;
+		}
+	}
+
+	/**
+	 * Undoes or redoes the edit by copying each saved tile back into the image. One Inflater and one buffer are used
+	 * for every tile. If a tile turns out to be corrupt, such as one read back from a damaged journal, the edit stops
+	 * there rather than writing garbage into the image.
+	 *
+	 * @param redo Whether or not to redo (true for redo, false for undo)
+	 */
+	@Override
+	public void enact(boolean redo) {
+		byte[][] saved = redo ? after : before;
+		int[] pixels = new int[TILE_PIXELS];
+		byte[] bytes = new byte[TILE_PIXELS * 4];
+		Inflater inflater = new Inflater();
+		try {
+			for (int i = 0; i < count; i++) {
+				inflater.reset();
+				inflate(inflater, saved[i], bytes, pixels);
+				image.writeTile(tiles[i] % tilesX, tiles[i] / tilesX, pixels);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the bounds of all of the touched areas, or null if nothing was touched.
+	 *
+	 * @return The bounds of the changed area
+	 */
+	@Override
+	public Rectangle getBounds() {
+		if (count == 0) {
+			return null;
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+	/**
+	 * Returns the bytes retained by the edit: the object, its scratch tile and buffers while it's being made, and the
+	 * compressed tiles.
+	 *
+	 * @return The number of bytes retained by the edit
+	 */
+	@Override
+	public long getRetainedBytes() {
+		long bytes = 128 + 4L * tiles.length + 8L * (before.length + after.length);
+		if (scratch != null) {
+			bytes += 2 * (16 + 4L * TILE_PIXELS);
+		}
+		byte[] deflated = this.deflated;
+		if (deflated != null) {
+			bytes += 16 + deflated.length;
+		}
+		for (int i = 0; i < count; i++) {
+			bytes += 16 + before[i].length;
+			if (after[i] != null) {
+				bytes += 16 + after[i].length;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the bounds of the edit followed by the index and compressed pixels of each saved tile.
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the edit couldn't be written
+	 */
+	@Override
+	void write(DataOutput out) throws IOException {
+		out.writeByte(TILE);
+		out.writeInt(minX);
+		out.writeInt(minY);
+		out.writeInt(maxX);
+		out.writeInt(maxY);
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeInt(tiles[i]);
+			out.writeInt(before[i].length);
+			out.write(before[i]);
+			out.writeInt(after[i].length);
+			out.write(after[i]);
+		}
+	}
+
+	/**
+	 * Compresses the pixels of a tile with the edit's deflater, into the doubling buffer.
+	 *
+	 * @param pixels The pixels of the tile
+	 * @return The compressed pixels
+	 */
+	private byte[] compress(int[] pixels) {
+		tileBytes.asIntBuffer().put(pixels, 0, TILE_PIXELS);
+		if (deflater == null) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+		} else {
+			deflater.reset();
+		}
+		deflater.setInput(tileBytes.array());
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == deflated.length) {
+				deflated = Arrays.copyOf(deflated, length * 2);
+			}
+			length += deflater.deflate(deflated, length, deflated.length - length);
+		}
+		return Arrays.copyOf(deflated, length);
+	}
+
+	/**
+	 * Inflates the compressed pixels of a tile into the given array.
+	 *
+	 * @param inflater The inflater to use, which must be new or reset
+	 * @param compressed The compressed pixels
+	 * @param bytes The buffer to inflate the bytes of the tile into
+	 * @param pixels The array to inflate the tile into
+	 * @throws IOException If the compressed pixels are corrupt or cut short
+	 */
+	private static void inflate(Inflater inflater, byte[] compressed, byte[] bytes, int[] pixels) throws IOException {
+		inflater.setInput(compressed);
+		try {
+			int length = 0;
+			while (length < bytes.length && !inflater.finished()) {
+				int inflated = inflater.inflate(bytes, length, bytes.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length < bytes.length) {
+				throw new IOException("The pixels of a tile were cut short");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		ByteBuffer.wrap(bytes).asIntBuffer().get(pixels, 0, TILE_PIXELS);
+	}
+}
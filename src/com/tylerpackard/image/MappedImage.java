@@ -0,0 +1,657 @@
+package com.tylerpackard.image;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A MappedImage keeps its pixels in a memory-mapped scratch file instead of on the Java heap, so documents larger than
+ * the heap can be edited and the garbage collector never has to look at the pixels. The file is laid out tile by tile
+ * like a TiledImage and is mapped in regions of several tiles at a time. Only a limited number of regions are kept
+ * mapped; the least recently used region is dropped when another one is needed, and the operating system's page cache
+ * takes care of the rest.
+ * <p>
+ * Snapshots are copied into a new scratch file by a background thread, tile by tile. Until the copy is done, a tile
+ * about to be written to is copied first, so the snapshot still gets the pixels from when it was taken, and using the
+ * snapshot waits for the copy to finish. The scratch file is deleted when the image is closed.
+ * <p>
+ * Since snapshots are too slow to take for every frame, the RenderWorker draws the image itself while the event thread
+ * carries on changing it. Finding a mapped region is synchronized so that's safe, and pixels are read and written
+ * straight through the mapped regions, so a frame may catch a change half done, but the area that changed is always
+ * drawn again once it's marked dirty.
+ *
+ * @author Tyler Packard
+ * @version 4
+ * @since 0.0.1
+ * @see TiledImage
+ */
+public class MappedImage implements PixelStore, Closeable {
+
+	/**
+	 * The number of regions kept mapped if no other limit is given. It can be changed with the
+	 * pixeleditor.mappedRegions system property.
+	 */
+	public static final int DEFAULT_MAX_REGIONS = Integer.getInteger("pixeleditor.mappedRegions", 64);
+
+	/**
+	 * The number of pixels in each tile.
+	 */
+	private static final int TILE_PIXELS = TiledImage.TILE_SIZE * TiledImage.TILE_SIZE;
+
+	/**
+	 * The number of tiles in each mapped region.
+	 */
+	private static final int REGION_TILES = 16;
+
+	/**
+	 * The width of the image.
+	 */
+	private final int width;
+
+	/**
+	 * The height of the image.
+	 */
+	private final int height;
+
+	/**
+	 * The number of tiles in each row.
+	 */
+	private final int tilesX;
+
+	/**
+	 * The number of tiles in each column.
+	 */
+	private final int tilesY;
+
+	/**
+	 * The most regions kept mapped at once.
+	 */
+	private final int maxRegions;
+
+	/**
+	 * The scratch file.
+	 */
+	private final File file;
+
+	/**
+	 * The channel of the scratch file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The copy of the image into its newest snapshot, while it's still being made, or null.
+	 */
+	private volatile SnapshotCopy copying;
+
+	/**
+	 * The copy filling this image if it's a snapshot that isn't finished yet, or null.
+	 */
+	private volatile SnapshotCopy filling;
+
+	/**
+	 * The currently mapped regions, from least to most recently used.
+	 */
+	private final LinkedHashMap<Integer, IntBuffer> regions;
+
+	/**
+	 * The index of the region that was used last, which is checked before looking in the map.
+	 */
+	private int lastRegion = -1;
+
+	/**
+	 * The region that was used last.
+	 */
+	private IntBuffer lastBuffer;
+
+	/**
+	 * A row of one color that spans are filled from. Only used by the thread writing the image.
+	 */
+	private final int[] fillPixels = new int[TiledImage.TILE_SIZE];
+
+	/**
+	 * The array that tiles are copied into to be drawn. Only used by the thread drawing the image.
+	 */
+	private final int[] drawPixels = new int[TILE_PIXELS];
+
+	/**
+	 * The image that draws from the drawPixels array.
+	 */
+	private final BufferedImage drawImage;
+
+
+	/**
+	 * Creates a new, fully transparent image backed by a new scratch file, keeping the default number of regions
+	 * mapped.
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @throws IOException If the scratch file can't be created
+	 */
+	public MappedImage(int width, int height) throws IOException {
+		this(width, height, DEFAULT_MAX_REGIONS);
+	}
+
+	/**
+	 * Creates a new, fully transparent image backed by a new scratch file. The file is deleted when the program exits.
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param maxRegions The most regions to keep mapped at once
+	 * @throws IOException If the scratch file can't be created
+	 */
+	public MappedImage(int width, int height, final int maxRegions) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.maxRegions = maxRegions;
+		tilesX = (width + TiledImage.TILE_MASK) >> TiledImage.TILE_SHIFT;
+		tilesY = (height + TiledImage.TILE_MASK) >> TiledImage.TILE_SHIFT;
+
+		file = File.createTempFile("pixels", ".scratch");
+		file.deleteOnExit();
+		RandomAccessFile scratch = new RandomAccessFile(file, "rw");
+		scratch.setLength((long) tilesX * tilesY * TILE_PIXELS * 4);
+		channel = scratch.getChannel();
+
+		regions = new LinkedHashMap<Integer, IntBuffer>(maxRegions * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, IntBuffer> eldest) {
+				return size() > maxRegions;
+			}
+		};
+
+		drawImage = new BufferedImage(TiledImage.TILE_SIZE, TiledImage.TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+	}
+
+
+	/**
+	 * Creates a new MappedImage with the same pixels as the given image, copying it in a tile at a time.
+	 *
+	 * @param image The image to copy
+	 * @return The mapped copy of the image
+	 * @throws IOException If the scratch file can't be created
+	 */
+	public static MappedImage fromImage(BufferedImage image) throws IOException {
+		MappedImage mapped = new MappedImage(image.getWidth(), image.getHeight());
+		int[] buffer = new int[TILE_PIXELS];
+		for (int ty = 0; ty < mapped.tilesY; ty++) {
+			for (int tx = 0; tx < mapped.tilesX; tx++) {
+				int x = tx << TiledImage.TILE_SHIFT;
+				int y = ty << TiledImage.TILE_SHIFT;
+				int w = Math.min(TiledImage.TILE_SIZE, mapped.width - x);
+				int h = Math.min(TiledImage.TILE_SIZE, mapped.height - y);
+				if (w < TiledImage.TILE_SIZE || h < TiledImage.TILE_SIZE) {
+					Arrays.fill(buffer, 0);
+				}
+				image.getRGB(x, y, w, h, buffer, 0, TiledImage.TILE_SIZE);
+				mapped.writeTile(tx, ty, buffer);
+			}
+		}
+		return mapped;
+	}
+
+
+	/**
+	 * @return The width of the image
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the image
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the ARGB value of a pixel, mapping its region if needed.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @return The ARGB value of the pixel
+	 */
+	@Override
+	public int getRGB(int x, int y) {
+		long index = indexOf(x, y);
+		return region((int) (index / (REGION_TILES * TILE_PIXELS))).get((int) (index % (REGION_TILES * TILE_PIXELS)));
+	}
+
+	/**
+	 * Sets the ARGB value of a pixel, mapping its region if needed.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @param rgb The new ARGB value
+	 */
+	@Override
+	public void setRGB(int x, int y, int rgb) {
+		beforeWrite((y >> TiledImage.TILE_SHIFT) * tilesX + (x >> TiledImage.TILE_SHIFT));
+		long index = indexOf(x, y);
+		region((int) (index / (REGION_TILES * TILE_PIXELS))).put((int) (index % (REGION_TILES * TILE_PIXELS)), rgb);
+	}
+
+	/**
+	 * Sets a horizontal span of pixels to the same ARGB value, with one bulk put for each tile the span crosses.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param rgb The new ARGB value
+	 */
+	@Override
+	public void fillSpan(int x, int y, int length, int rgb) {
+		int end = x + length;
+		while (x < end) {
+			int count = Math.min(end, (x | TiledImage.TILE_MASK) + 1) - x;
+			beforeWrite((y >> TiledImage.TILE_SHIFT) * tilesX + (x >> TiledImage.TILE_SHIFT));
+			Arrays.fill(fillPixels, 0, count, rgb);
+			spanBuffer(x, y).put(fillPixels, 0, count);
+			x += count;
+		}
+	}
+
+	/**
+	 * Copies a horizontal span of pixels into the given array. Each part of the span that lies in a single tile is one
+	 * row of that tile in the scratch file, so it's copied with a single bulk get.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array to copy the pixels into
+	 * @param offset The index in the array to copy the first pixel to
+	 */
+	@Override
+	public void getSpan(int x, int y, int length, int[] pixels, int offset) {
+		int end = x + length;
+		while (x < end) {
+			int count = Math.min(end, (x | TiledImage.TILE_MASK) + 1) - x;
+			spanBuffer(x, y).get(pixels, offset, count);
+			x += count;
+			offset += count;
+		}
+	}
+
+	/**
+	 * Replaces a horizontal span of pixels with the pixels in the given array, with one bulk put for each tile the
+	 * span crosses.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array holding the new ARGB values
+	 * @param offset The index in the array of the first pixel's new value
+	 */
+	@Override
+	public void setSpan(int x, int y, int length, int[] pixels, int offset) {
+		int end = x + length;
+		while (x < end) {
+			int count = Math.min(end, (x | TiledImage.TILE_MASK) + 1) - x;
+			beforeWrite((y >> TiledImage.TILE_SHIFT) * tilesX + (x >> TiledImage.TILE_SHIFT));
+			spanBuffer(x, y).put(pixels, offset, count);
+			x += count;
+			offset += count;
+		}
+	}
+
+	/**
+	 * Starts copying the image into a new scratch file with the same limit on mapped regions, and returns the copy
+	 * right away. The copy is made on a background thread, so taking a snapshot doesn't hold up the caller, but using
+	 * the snapshot waits for it to be finished. If the last snapshot is still being copied, it's finished first.
+	 *
+	 * @return A copy of the image
+	 */
+	@Override
+	public MappedImage snapshot() {
+		SnapshotCopy previous = copying;
+		if (previous != null) {
+			previous.run();
+		}
+		try {
+			MappedImage copy = new MappedImage(width, height, maxRegions);
+			SnapshotCopy snapshotCopy = new SnapshotCopy(this, copy);
+			copy.filling = snapshotCopy;
+			copying = snapshotCopy;
+			Thread thread = new Thread(snapshotCopy, "Snapshot Copy");
+			thread.setDaemon(true);
+			thread.start();
+			return copy;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Snapshots copy the whole scratch file, so they're far too slow to take for every frame.
+	 *
+	 * @return False
+	 */
+	@Override
+	public boolean hasCheapSnapshots() {
+		return false;
+	}
+
+	/**
+	 * Copies every tile of the snapshot back into the scratch file. Like taking the snapshot, this takes time
+	 * proportional to the size of the image.
+	 *
+	 * @param snapshot A snapshot returned by {@link #snapshot()} on this image
+	 */
+	@Override
+	public void restore(PixelStore snapshot) {
+		int[] pixels = new int[TILE_PIXELS];
+		for (int ty = 0; ty < tilesY; ty++) {
+			for (int tx = 0; tx < tilesX; tx++) {
+				snapshot.readTile(tx, ty, pixels);
+				writeTile(tx, ty, pixels);
+			}
+		}
+	}
+
+	/**
+	 * Closes the image, since nothing is shared with snapshots.
+	 *
+	 * @see #close()
+	 */
+	@Override
+	public void release() {
+		try {
+			close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Closes and deletes the scratch file, after finishing the snapshot being copied out of it, if there is one. The
+	 * mapped regions are unmapped once nothing refers to them anymore, and the image must not be used afterwards.
+	 *
+	 * @throws IOException If the scratch file can't be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		SnapshotCopy copy = copying;
+		if (copy != null) {
+			copy.run();
+		}
+		regions.clear();
+		lastRegion = -1;
+		lastBuffer = null;
+		channel.close();
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Draws each tile that overlaps the area by copying it out of the scratch file into a small reusable image.
+	 *
+	 * @param g The Graphics to paint with
+	 * @param area The area of the image to draw, in image coordinates
+	 * @param zoom How many screen pixels each image pixel covers
+	 */
+	@Override
+	public void draw(Graphics g, Rectangle area, int zoom) {
+		int x2 = Math.min(width, area.x + area.width);
+		int y2 = Math.min(height, area.y + area.height);
+		for (int ty = Math.max(0, area.y) >> TiledImage.TILE_SHIFT; ty << TiledImage.TILE_SHIFT < y2; ty++) {
+			for (int tx = Math.max(0, area.x) >> TiledImage.TILE_SHIFT; tx << TiledImage.TILE_SHIFT < x2; tx++) {
+				int tileX = tx << TiledImage.TILE_SHIFT;
+				int tileY = ty << TiledImage.TILE_SHIFT;
+				int sx1 = Math.max(area.x, tileX);
+				int sy1 = Math.max(area.y, tileY);
+				int sx2 = Math.min(x2, tileX + TiledImage.TILE_SIZE);
+				int sy2 = Math.min(y2, tileY + TiledImage.TILE_SIZE);
+				readTile(tx, ty, drawPixels);
+				drawImage.setRGB(0, 0, TiledImage.TILE_SIZE, TiledImage.TILE_SIZE, drawPixels, 0, TiledImage.TILE_SIZE);
+				g.drawImage(drawImage, sx1 * zoom, sy1 * zoom, sx2 * zoom, sy2 * zoom,
+						sx1 - tileX, sy1 - tileY, sx2 - tileX, sy2 - tileY, null);
+			}
+		}
+	}
+
+	/**
+	 * Copies the pixels of a tile out of the scratch file into the given array.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The array to copy the tile into
+	 */
+	@Override
+	public void readTile(int tx, int ty, int[] pixels) {
+		int tile = ty * tilesX + tx;
+		IntBuffer buffer = region(tile / REGION_TILES).duplicate();
+		buffer.position((tile % REGION_TILES) * TILE_PIXELS);
+		buffer.get(pixels, 0, TILE_PIXELS);
+	}
+
+	/**
+	 * Copies the given pixels into a tile of the scratch file.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The pixels of the tile
+	 */
+	@Override
+	public void writeTile(int tx, int ty, int[] pixels) {
+		int tile = ty * tilesX + tx;
+		beforeWrite(tile);
+		IntBuffer buffer = region(tile / REGION_TILES).duplicate();
+		buffer.position((tile % REGION_TILES) * TILE_PIXELS);
+		buffer.put(pixels, 0, TILE_PIXELS);
+	}
+
+	/**
+	 * Makes sure the tile has been copied into the snapshot being made, if there is one, before it's written to.
+	 *
+	 * @param tile The index of the tile about to be written to
+	 */
+	private void beforeWrite(int tile) {
+		SnapshotCopy copy = copying;
+		if (copy != null) {
+			copy.copyTile(tile);
+		}
+	}
+
+	/**
+	 * Returns a view of the region holding a pixel, positioned at that pixel, so that the rest of its tile row can be
+	 * read or written in bulk.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @return The positioned buffer
+	 */
+	private IntBuffer spanBuffer(int x, int y) {
+		long index = indexOf(x, y);
+		IntBuffer buffer = region((int) (index / (REGION_TILES * TILE_PIXELS))).duplicate();
+		buffer.position((int) (index % (REGION_TILES * TILE_PIXELS)));
+		return buffer;
+	}
+
+	/**
+	 * Returns the position of a pixel in the scratch file, in ints.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @return The index of the pixel
+	 */
+	private long indexOf(int x, int y) {
+		int tile = (y >> TiledImage.TILE_SHIFT) * tilesX + (x >> TiledImage.TILE_SHIFT);
+		return (long) tile * TILE_PIXELS + (((y & TiledImage.TILE_MASK) << TiledImage.TILE_SHIFT) | (x & TiledImage.TILE_MASK));
+	}
+
+	/**
+	 * Returns the mapped buffer of a region, mapping it if it isn't already mapped. Mapping a new region may drop the
+	 * least recently used one, which is unmapped once nothing refers to it anymore, so a buffer another thread is still
+	 * reading stays usable.
+	 *
+	 * @param index The index of the region
+	 * @return The mapped region
+	 */
+	private synchronized IntBuffer region(int index) {
+		SnapshotCopy copy = filling;
+		if (copy != null) {
+			copy.await();
+		}
+		if (index == lastRegion) {
+			return lastBuffer;
+		}
+		IntBuffer buffer = regions.get(index);
+		if (buffer == null) {
+			long start = (long) index * REGION_TILES * TILE_PIXELS * 4;
+			long size = Math.min((long) REGION_TILES * TILE_PIXELS * 4, (long) tilesX * tilesY * TILE_PIXELS * 4 - start);
+			try {
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, size).order(ByteOrder.nativeOrder()).asIntBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			regions.put(index, buffer);
+		}
+		lastRegion = index;
+		lastBuffer = buffer;
+		return buffer;
+	}
+
+
+	/**
+	 * Copies the scratch file of an image into the scratch file of a snapshot, tile by tile. The background thread
+	 * runs through every tile, and the image copies a tile itself before writing to it, so whichever comes first gets
+	 * the tile's pixels from when the snapshot was taken. Tiles are read and written with positional reads and writes
+	 * on the channels, so neither image's mapped regions are touched from the background thread.
+	 */
+	private static class SnapshotCopy implements Runnable {
+
+		/**
+		 * The image being copied.
+		 */
+		private final MappedImage source;
+
+		/**
+		 * The snapshot being filled.
+		 */
+		private final MappedImage copy;
+
+		/**
+		 * The tiles that have been copied already.
+		 */
+		private final BitSet copied = new BitSet();
+
+		/**
+		 * The buffer each tile is copied through.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(TILE_PIXELS * 4);
+
+		/**
+		 * Counted down once every tile has been copied, or the copy has failed.
+		 */
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		/**
+		 * The reason the copy failed, or null if it hasn't.
+		 */
+		private volatile IOException failure;
+
+
+		/**
+		 * Creates a copy that hasn't started yet.
+		 *
+		 * @param source The image being copied
+		 * @param copy The snapshot to fill
+		 */
+		SnapshotCopy(MappedImage source, MappedImage copy) {
+			this.source = source;
+			this.copy = copy;
+		}
+
+
+		/**
+		 * Copies every tile that hasn't been copied yet, and then lets both images know the copy is done. Run by the
+		 * background thread, and by the image if it needs the copy finished early.
+		 */
+		@Override
+		public void run() {
+			int tiles = source.tilesX * source.tilesY;
+			for (int tile = 0; tile < tiles && failure == null; tile++) {
+				copyTile(tile);
+			}
+			if (source.copying == this) {
+				source.copying = null;
+			}
+			if (failure == null) {
+				copy.filling = null;
+			}
+			done.countDown();
+		}
+
+		/**
+		 * Copies a tile into the snapshot, unless it has been copied already. If it can't be copied, the whole copy
+		 * fails and the image stops copying tiles, so writing to the image is never held up by a broken snapshot.
+		 *
+		 * @param tile The index of the tile
+		 */
+		synchronized void copyTile(int tile) {
+			if (copied.get(tile) || failure != null) {
+				return;
+			}
+			long position = (long) tile * TILE_PIXELS * 4;
+			try {
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					if (source.channel.read(buffer, position + buffer.position()) < 0) {
+						break;
+					}
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					copy.channel.write(buffer, position + buffer.position());
+				}
+				copied.set(tile);
+			} catch (IOException e) {
+				e.printStackTrace();
+				failure = e;
+				if (source.copying == this) {
+					source.copying = null;
+				}
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Waits for the copy to be finished.
+		 *
+		 * @throws UncheckedIOException If the copy failed
+		 */
+		void await() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw new UncheckedIOException(failure);
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.tylerpackard.image;
+
+import java.awt.*;
+
+/**
+ * A PixelStore holds the pixels of the image being edited as packed ARGB ints. The Canvas, tools, and edits all read
+ * and write the image through a PixelStore, so the way the pixels are actually stored can change without them knowing.
+ *
+ * @author Tyler Packard
+ * @version 5
+ * @since 0.0.1
+ * @see TiledImage
+ * @see PixelStoreImage
+ */
+public interface PixelStore {
+
+	/**
+	 * @return The width of the image
+	 */
+	int getWidth();
+
+	/**
+	 * @return The height of the image
+	 */
+	int getHeight();
+
+	/**
+	 * Returns the ARGB value of a pixel.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @return The ARGB value of the pixel
+	 */
+	int getRGB(int x, int y);
+
+	/**
+	 * Sets the ARGB value of a pixel.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @param rgb The new ARGB value
+	 */
+	void setRGB(int x, int y, int rgb);
+
+	/**
+	 * Sets a horizontal span of pixels to the same ARGB value.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param rgb The new ARGB value
+	 */
+	void fillSpan(int x, int y, int length, int rgb);
+
+	/**
+	 * Copies a horizontal span of pixels into the given array. Reading a whole span at once is much faster than
+	 * calling {@link #getRGB(int, int)} for each pixel.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array to copy the pixels into
+	 * @param offset The index in the array to copy the first pixel to
+	 */
+	void getSpan(int x, int y, int length, int[] pixels, int offset);
+
+	/**
+	 * Replaces a horizontal span of pixels with the pixels in the given array.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array holding the new ARGB values
+	 * @param offset The index in the array of the first pixel's new value
+	 */
+	void setSpan(int x, int y, int length, int[] pixels, int offset);
+
+	/**
+	 * Copies a whole tile of the image into the given array, row by row. The image is divided into tiles of
+	 * {@link TiledImage#TILE_SIZE} by TILE_SIZE pixels, and the parts of edge tiles outside of the image are
+	 * transparent.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The array to copy the tile into, which must hold TILE_SIZE * TILE_SIZE pixels
+	 */
+	void readTile(int tx, int ty, int[] pixels);
+
+	/**
+	 * Replaces a whole tile of the image with the pixels in the given array.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The pixels of the tile, row by row
+	 * @see #readTile(int, int, int[])
+	 */
+	void writeTile(int tx, int ty, int[] pixels);
+
+	/**
+	 * Returns a copy of the image as it is now. Later changes to either the image or the snapshot don't affect the
+	 * other, but stores may share unchanged pixels between them.
+	 *
+	 * @return A snapshot of the image
+	 */
+	PixelStore snapshot();
+
+	/**
+	 * Returns whether or not taking a snapshot is cheap enough to do for every frame that's drawn, which it is for
+	 * stores that share their pixels with their snapshots. Stores without cheap snapshots are drawn while they're being
+	 * changed instead, so they must be safe to read from one other thread while they're being written, as long as the
+	 * reader doesn't mind catching a change half done.
+	 *
+	 * @return Whether or not snapshots are cheap
+	 */
+	boolean hasCheapSnapshots();
+
+	/**
+	 * Makes the image the same as a snapshot that was taken from it earlier. Stores that share pixels with their
+	 * snapshots can do this without copying anything.
+	 *
+	 * @param snapshot A snapshot returned by {@link #snapshot()} on this image
+	 */
+	void restore(PixelStore snapshot);
+
+	/**
+	 * Lets go of whatever the image holds on to, once it's no longer needed. Releasing a snapshot lets the image it was
+	 * taken from stop treating their shared pixels as shared. The image must not be used after it's released.
+	 */
+	void release();
+
+	/**
+	 * Draws part of the image scaled up by the given zoom factor. The area is drawn at its zoomed position, so the
+	 * source pixel (sx, sy) lands at (sx * zoom, sy * zoom).
+	 *
+	 * @param g The Graphics to paint with
+	 * @param area The area of the image to draw, in image coordinates
+	 * @param zoom How many screen pixels each image pixel covers
+	 */
+	void draw(Graphics g, Rectangle area, int zoom);
+}
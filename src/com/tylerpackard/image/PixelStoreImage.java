@@ -0,0 +1,241 @@
+package com.tylerpackard.image;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.Vector;
+
+/**
+ * A PixelStoreImage lets a PixelStore be saved with ImageIO without copying it into a BufferedImage first. It's a
+ * RenderedImage made of the store's tiles, and whenever a writer asks for part of it, only that part is read out of the
+ * store. Writers like the PNG writer ask for a row at a time, so even an image far bigger than the heap can be saved.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see PixelStore
+ */
+public class PixelStoreImage implements RenderedImage {
+
+	/**
+	 * The color model of the pixels, which are packed ARGB ints.
+	 */
+	private static final ColorModel COLOR_MODEL = ColorModel.getRGBdefault();
+
+	/**
+	 * The store the pixels are read from.
+	 */
+	private final PixelStore store;
+
+
+	/**
+	 * Creates an image that reads its pixels from the given store. The store must not change while it's being used.
+	 *
+	 * @param store The store to read from
+	 */
+	public PixelStoreImage(PixelStore store) {
+		this.store = store;
+	}
+
+
+	/**
+	 * @return Null, since the image doesn't have any sources
+	 */
+	@Override
+	public Vector<RenderedImage> getSources() {
+		return null;
+	}
+
+	/**
+	 * @param name The name of the property
+	 * @return {@link Image#UndefinedProperty}, since the image doesn't have any properties
+	 */
+	@Override
+	public Object getProperty(String name) {
+		return Image.UndefinedProperty;
+	}
+
+	/**
+	 * @return Null, since the image doesn't have any properties
+	 */
+	@Override
+	public String[] getPropertyNames() {
+		return null;
+	}
+
+	/**
+	 * @return The default ARGB color model
+	 */
+	@Override
+	public ColorModel getColorModel() {
+		return COLOR_MODEL;
+	}
+
+	/**
+	 * @return A sample model for packed ARGB tiles
+	 */
+	@Override
+	public SampleModel getSampleModel() {
+		return COLOR_MODEL.createCompatibleSampleModel(TiledImage.TILE_SIZE, TiledImage.TILE_SIZE);
+	}
+
+	/**
+	 * @return The width of the image
+	 */
+	@Override
+	public int getWidth() {
+		return store.getWidth();
+	}
+
+	/**
+	 * @return The height of the image
+	 */
+	@Override
+	public int getHeight() {
+		return store.getHeight();
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getMinX() {
+		return 0;
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getMinY() {
+		return 0;
+	}
+
+	/**
+	 * @return The number of tiles in each row
+	 */
+	@Override
+	public int getNumXTiles() {
+		return (store.getWidth() + TiledImage.TILE_MASK) >> TiledImage.TILE_SHIFT;
+	}
+
+	/**
+	 * @return The number of tiles in each column
+	 */
+	@Override
+	public int getNumYTiles() {
+		return (store.getHeight() + TiledImage.TILE_MASK) >> TiledImage.TILE_SHIFT;
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getMinTileX() {
+		return 0;
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getMinTileY() {
+		return 0;
+	}
+
+	/**
+	 * @return The width of each tile
+	 */
+	@Override
+	public int getTileWidth() {
+		return TiledImage.TILE_SIZE;
+	}
+
+	/**
+	 * @return The height of each tile
+	 */
+	@Override
+	public int getTileHeight() {
+		return TiledImage.TILE_SIZE;
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getTileGridXOffset() {
+		return 0;
+	}
+
+	/**
+	 * @return 0
+	 */
+	@Override
+	public int getTileGridYOffset() {
+		return 0;
+	}
+
+	/**
+	 * Reads a tile out of the store into a new raster at the tile's position.
+	 *
+	 * @param tileX The column of the tile
+	 * @param tileY The row of the tile
+	 * @return The tile
+	 */
+	@Override
+	public Raster getTile(int tileX, int tileY) {
+		int[] pixels = new int[TiledImage.TILE_SIZE * TiledImage.TILE_SIZE];
+		store.readTile(tileX, tileY, pixels);
+		DataBufferInt buffer = new DataBufferInt(pixels, pixels.length);
+		Point location = new Point(tileX << TiledImage.TILE_SHIFT, tileY << TiledImage.TILE_SHIFT);
+		return Raster.createWritableRaster(getSampleModel(), buffer, location);
+	}
+
+	/**
+	 * Reads the whole image out of the store. This copies everything onto the heap, so writers that ask for the image
+	 * a part at a time should be used for big images.
+	 *
+	 * @return The whole image
+	 */
+	@Override
+	public Raster getData() {
+		return getData(new Rectangle(0, 0, store.getWidth(), store.getHeight()));
+	}
+
+	/**
+	 * Reads part of the image out of the store, a row at a time.
+	 *
+	 * @param rect The part of the image to read
+	 * @return The part of the image, at its position in the image
+	 */
+	@Override
+	public Raster getData(Rectangle rect) {
+		Rectangle area = rect.intersection(new Rectangle(0, 0, store.getWidth(), store.getHeight()));
+		WritableRaster raster = COLOR_MODEL.createCompatibleWritableRaster(Math.max(1, area.width), Math.max(1, area.height))
+				.createWritableTranslatedChild(area.x, area.y);
+		return copyData(raster);
+	}
+
+	/**
+	 * Reads the part of the image covered by the raster out of the store, a row at a time. A new raster is made for the
+	 * whole image if none is given.
+	 *
+	 * @param raster The raster to read into, which must hold packed ARGB ints, or null
+	 * @return The raster
+	 */
+	@Override
+	public WritableRaster copyData(WritableRaster raster) {
+		if (raster == null) {
+			raster = COLOR_MODEL.createCompatibleWritableRaster(store.getWidth(), store.getHeight());
+		}
+		Rectangle area = raster.getBounds().intersection(new Rectangle(0, 0, store.getWidth(), store.getHeight()));
+		if (area.isEmpty()) {
+			return raster;
+		}
+		int[] row = new int[area.width];
+		for (int y = area.y; y < area.y + area.height; y++) {
+			store.getSpan(area.x, y, area.width, row, 0);
+			raster.setDataElements(area.x, y, area.width, 1, row);
+		}
+		return raster;
+	}
+}
@@ -0,0 +1,66 @@
+package com.tylerpackard.image;
+
+import java.awt.image.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Tile is a square block of pixels in a TiledImage. Tiles can be shared between an image and its snapshots. Each tile
+ * counts the images using it, and a tile used by more than one image is copied before it's written to. Once the
+ * snapshots sharing a tile are released, the image can write to it in place again.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see TiledImage
+ */
+class Tile {
+
+	/**
+	 * The pixels of the tile as packed ARGB ints, row by row.
+	 */
+	final int[] pixels;
+
+	/**
+	 * The number of images using this tile: the image it was made for, plus every unreleased snapshot sharing it.
+	 * Tiles used by more than one image must not be written to. Snapshots can be released from any thread, so the
+	 * count is atomic.
+	 */
+	final AtomicInteger users = new AtomicInteger(1);
+
+	/**
+	 * A BufferedImage that draws straight from the pixel array, created when the tile is first drawn.
+	 */
+	private BufferedImage image;
+
+
+	/**
+	 * Creates a new transparent tile, used only by the image it's made for.
+	 */
+	Tile() {
+		pixels = new int[TiledImage.TILE_SIZE * TiledImage.TILE_SIZE];
+	}
+
+	/**
+	 * Creates a new tile holding a copy of the given tile's pixels, used only by the image it's made for.
+	 *
+	 * @param tile The tile to copy
+	 */
+	Tile(Tile tile) {
+		pixels = tile.pixels.clone();
+	}
+
+
+	/**
+	 * Returns a BufferedImage backed by the tile's pixel array, so changes to the pixels show up without copying.
+	 *
+	 * @return The tile as a BufferedImage
+	 */
+	BufferedImage getImage() {
+		if (image == null) {
+			DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+			WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), TiledImage.TILE_SIZE, TiledImage.TILE_SIZE, TiledImage.TILE_SIZE, model.getMasks(), null);
+			image = new BufferedImage(model, raster, false, null);
+		}
+		return image;
+	}
+}
@@ -0,0 +1,425 @@
+package com.tylerpackard.image;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A TiledImage stores its pixels in square tiles that are only allocated once something is drawn on them, so empty
+ * areas of a huge image don't take up any memory. Snapshots share tiles with the image they were taken from, and a
+ * shared tile is copied the first time either of them writes to it. Releasing a snapshot once it's no longer needed
+ * lets the image write to the tiles it shared in place again.
+ *
+ * @author Tyler Packard
+ * @version 3
+ * @since 0.0.1
+ * @see Tile
+ */
+public class TiledImage implements PixelStore {
+
+	/**
+	 * The number of bits to shift a coordinate by to get the tile it's in.
+	 */
+	static final int TILE_SHIFT = 8;
+
+	/**
+	 * The width and height of each tile.
+	 */
+	public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+	/**
+	 * The mask that gets a coordinate's position inside its tile.
+	 */
+	static final int TILE_MASK = TILE_SIZE - 1;
+
+	/**
+	 * The width of the image.
+	 */
+	private final int width;
+
+	/**
+	 * The height of the image.
+	 */
+	private final int height;
+
+	/**
+	 * The number of tiles in each row.
+	 */
+	private final int tilesX;
+
+	/**
+	 * The number of tiles in each column.
+	 */
+	private final int tilesY;
+
+	/**
+	 * The tiles, row by row. Tiles that have never been drawn on are null and fully transparent.
+	 */
+	private final Tile[] tiles;
+
+
+	/**
+	 * Creates a new, fully transparent image. No tiles are allocated until they're drawn on.
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 */
+	public TiledImage(int width, int height) {
+		this.width = width;
+		this.height = height;
+		tilesX = (width + TILE_MASK) >> TILE_SHIFT;
+		tilesY = (height + TILE_MASK) >> TILE_SHIFT;
+		tiles = new Tile[tilesX * tilesY];
+	}
+
+	/**
+	 * Creates an image that uses the given tiles, which must already count it as one of their users.
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param tiles The tiles of the image
+	 */
+	private TiledImage(int width, int height, Tile[] tiles) {
+		this.width = width;
+		this.height = height;
+		tilesX = (width + TILE_MASK) >> TILE_SHIFT;
+		tilesY = (height + TILE_MASK) >> TILE_SHIFT;
+		this.tiles = tiles;
+	}
+
+
+	/**
+	 * Creates a new TiledImage with the same pixels as the given image. Each tile is read into the same buffer first,
+	 * and only tiles with a pixel that isn't transparent are allocated, so mostly empty images stay small.
+	 *
+	 * @param image The image to copy
+	 * @return The tiled copy of the image
+	 */
+	public static TiledImage fromImage(BufferedImage image) {
+		TiledImage tiled = new TiledImage(image.getWidth(), image.getHeight());
+		int[] buffer = new int[TILE_SIZE * TILE_SIZE];
+		for (int ty = 0; ty < tiled.tilesY; ty++) {
+			for (int tx = 0; tx < tiled.tilesX; tx++) {
+				int x = tx << TILE_SHIFT;
+				int y = ty << TILE_SHIFT;
+				int w = Math.min(TILE_SIZE, tiled.width - x);
+				int h = Math.min(TILE_SIZE, tiled.height - y);
+				if (w < TILE_SIZE || h < TILE_SIZE) {
+					Arrays.fill(buffer, 0);
+				}
+				image.getRGB(x, y, w, h, buffer, 0, TILE_SIZE);
+				for (int pixel : buffer) {
+					if (pixel != 0) {
+						Tile tile = new Tile();
+						System.arraycopy(buffer, 0, tile.pixels, 0, buffer.length);
+						tiled.tiles[ty * tiled.tilesX + tx] = tile;
+						break;
+					}
+				}
+			}
+		}
+		return tiled;
+	}
+
+	/**
+	 * Returns roughly how many bytes each of the given snapshots keeps alive on top of the image: its tile array, plus
+	 * every tile it holds that the image and the newer snapshots don't. Tiles shared by several snapshots are only
+	 * counted for the newest of them, so dropping the snapshots oldest first releases exactly what was counted for
+	 * each one.
+	 *
+	 * @param snapshots Snapshots taken from the image, oldest first
+	 * @param image The image the snapshots were taken from
+	 * @return The number of bytes retained by each snapshot, in the same order
+	 */
+	public static long[] retainedBytes(List<TiledImage> snapshots, TiledImage image) {
+		Set<Tile> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Tile tile : image.tiles) {
+			if (tile != null) {
+				counted.add(tile);
+			}
+		}
+
+		long[] bytes = new long[snapshots.size()];
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			TiledImage snapshot = snapshots.get(i);
+			bytes[i] = 48 + 16 + 4L * snapshot.tiles.length;
+			for (Tile tile : snapshot.tiles) {
+				if (tile != null && counted.add(tile)) {
+					bytes[i] += 32 + 16 + 4L * TILE_SIZE * TILE_SIZE;
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The width of the image
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the image
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the ARGB value of a pixel. Pixels in unallocated tiles are transparent.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @return The ARGB value of the pixel
+	 */
+	@Override
+	public int getRGB(int x, int y) {
+		Tile tile = tiles[(y >> TILE_SHIFT) * tilesX + (x >> TILE_SHIFT)];
+		if (tile == null) {
+			return 0;
+		}
+		return tile.pixels[((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK)];
+	}
+
+	/**
+	 * Sets the ARGB value of a pixel, allocating or copying its tile if needed.
+	 *
+	 * @param x The X position of the pixel
+	 * @param y The Y position of the pixel
+	 * @param rgb The new ARGB value
+	 */
+	@Override
+	public void setRGB(int x, int y, int rgb) {
+		Tile tile = writableTile(x >> TILE_SHIFT, y >> TILE_SHIFT, rgb == 0);
+		if (tile != null) {
+			tile.pixels[((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK)] = rgb;
+		}
+	}
+
+	/**
+	 * Sets a horizontal span of pixels to the same ARGB value, filling each tile it crosses in one go.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param rgb The new ARGB value
+	 */
+	@Override
+	public void fillSpan(int x, int y, int length, int rgb) {
+		int ty = y >> TILE_SHIFT;
+		int row = (y & TILE_MASK) << TILE_SHIFT;
+		int end = x + length;
+		while (x < end) {
+			int tileEnd = Math.min(end, (x | TILE_MASK) + 1);
+			Tile tile = writableTile(x >> TILE_SHIFT, ty, rgb == 0);
+			if (tile != null) {
+				Arrays.fill(tile.pixels, row + (x & TILE_MASK), row + ((tileEnd - 1) & TILE_MASK) + 1, rgb);
+			}
+			x = tileEnd;
+		}
+	}
+
+	/**
+	 * Copies a horizontal span of pixels into the given array, one tile at a time. Pixels in unallocated tiles are
+	 * transparent.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array to copy the pixels into
+	 * @param offset The index in the array to copy the first pixel to
+	 */
+	@Override
+	public void getSpan(int x, int y, int length, int[] pixels, int offset) {
+		int ty = y >> TILE_SHIFT;
+		int row = (y & TILE_MASK) << TILE_SHIFT;
+		int end = x + length;
+		while (x < end) {
+			int count = Math.min(end, (x | TILE_MASK) + 1) - x;
+			Tile tile = tiles[ty * tilesX + (x >> TILE_SHIFT)];
+			if (tile == null) {
+				Arrays.fill(pixels, offset, offset + count, 0);
+			} else {
+				System.arraycopy(tile.pixels, row + (x & TILE_MASK), pixels, offset, count);
+			}
+			x += count;
+			offset += count;
+		}
+	}
+
+	/**
+	 * Replaces a horizontal span of pixels with the pixels in the given array, copying into each tile it crosses in
+	 * one go.
+	 *
+	 * @param x The X position of the first pixel
+	 * @param y The Y position of the span
+	 * @param length The number of pixels in the span
+	 * @param pixels The array holding the new ARGB values
+	 * @param offset The index in the array of the first pixel's new value
+	 */
+	@Override
+	public void setSpan(int x, int y, int length, int[] pixels, int offset) {
+		int ty = y >> TILE_SHIFT;
+		int row = (y & TILE_MASK) << TILE_SHIFT;
+		int end = x + length;
+		while (x < end) {
+			int count = Math.min(end, (x | TILE_MASK) + 1) - x;
+			System.arraycopy(pixels, offset, writableTile(x >> TILE_SHIFT, ty, false).pixels, row + (x & TILE_MASK), count);
+			x += count;
+			offset += count;
+		}
+	}
+
+	/**
+	 * Copies a whole tile into the given array. Unallocated tiles are copied as transparent pixels.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The array to copy the tile into
+	 */
+	@Override
+	public void readTile(int tx, int ty, int[] pixels) {
+		Tile tile = tiles[ty * tilesX + tx];
+		if (tile == null) {
+			Arrays.fill(pixels, 0, TILE_SIZE * TILE_SIZE, 0);
+		} else {
+			System.arraycopy(tile.pixels, 0, pixels, 0, TILE_SIZE * TILE_SIZE);
+		}
+	}
+
+	/**
+	 * Replaces a whole tile with the pixels in the given array, allocating or copying the tile first if needed.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param pixels The pixels of the tile
+	 */
+	@Override
+	public void writeTile(int tx, int ty, int[] pixels) {
+		System.arraycopy(pixels, 0, writableTile(tx, ty, false).pixels, 0, TILE_SIZE * TILE_SIZE);
+	}
+
+	/**
+	 * Returns a snapshot of the image that shares all of its tiles. Every tile counts the snapshot as another user, so
+	 * whichever image writes to a tile first gets its own copy of it, until the snapshot is released.
+	 *
+	 * @return A snapshot of the image
+	 */
+	@Override
+	public TiledImage snapshot() {
+		for (Tile tile : tiles) {
+			if (tile != null) {
+				tile.users.incrementAndGet();
+			}
+		}
+		return new TiledImage(width, height, tiles.clone());
+	}
+
+	/**
+	 * Snapshots only copy the array of tiles, so they're cheap no matter how big the image is.
+	 *
+	 * @return True
+	 */
+	@Override
+	public boolean hasCheapSnapshots() {
+		return true;
+	}
+
+	/**
+	 * Makes the image share all of the snapshot's tiles again. The image becomes another user of each of the
+	 * snapshot's tiles and stops using its old ones, so neither image can change the other.
+	 *
+	 * @param snapshot A snapshot returned by {@link #snapshot()} on this image
+	 */
+	@Override
+	public void restore(PixelStore snapshot) {
+		Tile[] source = ((TiledImage) snapshot).tiles;
+		for (Tile tile : source) {
+			if (tile != null) {
+				tile.users.incrementAndGet();
+			}
+		}
+		for (Tile tile : tiles) {
+			if (tile != null) {
+				tile.users.decrementAndGet();
+			}
+		}
+		System.arraycopy(source, 0, tiles, 0, tiles.length);
+	}
+
+	/**
+	 * Stops using every tile, so that the other images sharing them can write to them in place again. Releasing an
+	 * image twice does nothing, and a released image is fully transparent.
+	 */
+	@Override
+	public void release() {
+		for (int i = 0; i < tiles.length; i++) {
+			if (tiles[i] != null) {
+				tiles[i].users.decrementAndGet();
+				tiles[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Draws each allocated tile that overlaps the area. Unallocated tiles are transparent, so they're skipped.
+	 *
+	 * @param g The Graphics to paint with
+	 * @param area The area of the image to draw, in image coordinates
+	 * @param zoom How many screen pixels each image pixel covers
+	 */
+	@Override
+	public void draw(Graphics g, Rectangle area, int zoom) {
+		int x2 = Math.min(width, area.x + area.width);
+		int y2 = Math.min(height, area.y + area.height);
+		for (int ty = Math.max(0, area.y) >> TILE_SHIFT; ty << TILE_SHIFT < y2; ty++) {
+			for (int tx = Math.max(0, area.x) >> TILE_SHIFT; tx << TILE_SHIFT < x2; tx++) {
+				Tile tile = tiles[ty * tilesX + tx];
+				if (tile != null) {
+					int tileX = tx << TILE_SHIFT;
+					int tileY = ty << TILE_SHIFT;
+					int sx1 = Math.max(area.x, tileX);
+					int sy1 = Math.max(area.y, tileY);
+					int sx2 = Math.min(x2, tileX + TILE_SIZE);
+					int sy2 = Math.min(y2, tileY + TILE_SIZE);
+					g.drawImage(tile.getImage(), sx1 * zoom, sy1 * zoom, sx2 * zoom, sy2 * zoom,
+							sx1 - tileX, sy1 - tileY, sx2 - tileX, sy2 - tileY, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the tile at the given tile position so that it can be written to. Unallocated tiles are allocated, and
+	 * shared tiles are replaced by a private copy first.
+	 *
+	 * @param tx The column of the tile
+	 * @param ty The row of the tile
+	 * @param transparent Whether or not the write is fully transparent, in which case an unallocated tile is left alone
+	 * @return The writable tile, or null if it's unallocated and the write is transparent
+	 */
+	private Tile writableTile(int tx, int ty, boolean transparent) {
+		int index = ty * tilesX + tx;
+		Tile tile = tiles[index];
+		if (tile == null) {
+			if (transparent) {
+				return null;
+			}
+			tile = new Tile();
+			tiles[index] = tile;
+		} else if (tile.users.get() > 1) {
+			Tile copy = new Tile(tile);
+			tiles[index] = copy;
+			tile.users.decrementAndGet();
+			tile = copy;
+		}
+		return tile;
+	}
+}
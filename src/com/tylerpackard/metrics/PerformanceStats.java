@@ -0,0 +1,133 @@
+package com.tylerpackard.metrics;
+
+/**
+ * Keeps track of how fast the editor is running, so that slowdowns on big images can be seen and caught: how long
+ * painting, drawing frames, tools and color changes take, how long input takes to show up on screen, how big the areas
+ * being redrawn are, and how many frames are being shown each second. Each measurement is kept in a RollingHistogram,
+ * and everything can be recorded and read from any thread.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see RollingHistogram
+ */
+public class PerformanceStats {
+
+	/**
+	 * How long the Canvas takes to paint, in microseconds.
+	 */
+	private final RollingHistogram paintTime = new RollingHistogram();
+
+	/**
+	 * How long the Canvas's frames take to draw, in microseconds.
+	 */
+	private final RollingHistogram renderTime = new RollingHistogram();
+
+	/**
+	 * How long input takes to show up on screen, in milliseconds.
+	 */
+	private final RollingHistogram inputLatency = new RollingHistogram();
+
+	/**
+	 * How big each area of the image redrawn after a change is, in image pixels.
+	 */
+	private final RollingHistogram dirtyArea = new RollingHistogram();
+
+	/**
+	 * How long tools take to handle each click and batch of drags, in microseconds.
+	 */
+	private final RollingHistogram toolTime = new RollingHistogram();
+
+	/**
+	 * How long the ColorChooser takes to update after the color changes, in microseconds.
+	 */
+	private final RollingHistogram colorUpdateTime = new RollingHistogram();
+
+	/**
+	 * When the latest frames were shown, from System.nanoTime(), in a ring that wraps around once it's full.
+	 */
+	private final long[] frameTimes = new long[256];
+
+	/**
+	 * The number of frames ever shown.
+	 */
+	private long frames = 0;
+
+
+	/**
+	 * @return How long the Canvas takes to paint, in microseconds
+	 */
+	public RollingHistogram getPaintTime() {
+		return paintTime;
+	}
+
+	/**
+	 * @return How long the Canvas's frames take to draw, in microseconds
+	 */
+	public RollingHistogram getRenderTime() {
+		return renderTime;
+	}
+
+	/**
+	 * @return How long input takes to show up on screen, in milliseconds
+	 */
+	public RollingHistogram getInputLatency() {
+		return inputLatency;
+	}
+
+	/**
+	 * @return How big each area of the image redrawn after a change is, in image pixels
+	 */
+	public RollingHistogram getDirtyArea() {
+		return dirtyArea;
+	}
+
+	/**
+	 * @return How long tools take to handle each click and batch of drags, in microseconds
+	 */
+	public RollingHistogram getToolTime() {
+		return toolTime;
+	}
+
+	/**
+	 * @return How long the ColorChooser takes to update after the color changes, in microseconds
+	 */
+	public RollingHistogram getColorUpdateTime() {
+		return colorUpdateTime;
+	}
+
+	/**
+	 * Records that a new frame has been shown on screen.
+	 */
+	public synchronized void frameShown() {
+		frameTimes[(int) (frames % frameTimes.length)] = System.nanoTime();
+		frames++;
+	}
+
+	/**
+	 * Returns the number of frames shown in the last second. Frames are only counted when something on the Canvas
+	 * changes, so this drops to 0 when nothing is happening.
+	 *
+	 * @return The frames per second
+	 */
+	public synchronized int getFramesPerSecond() {
+		long since = System.nanoTime() - 1_000_000_000L;
+		int count = 0;
+		for (int i = 0; i < Math.min(frames, frameTimes.length); i++) {
+			if (frameTimes[i] - since > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return A summary of every measurement, for debugging
+	 */
+	@Override
+	public String toString() {
+		return "paint: " + paintTime + " us\n" + "render: " + renderTime + " us\n" + "latency: " + inputLatency
+				+ " ms\n" + "dirty: " + dirtyArea + " px\n" + "tool: " + toolTime + " us\n" + "color: "
+				+ colorUpdateTime + " us\n" + "fps: " + getFramesPerSecond();
+	}
+}
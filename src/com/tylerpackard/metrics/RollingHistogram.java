@@ -0,0 +1,122 @@
+package com.tylerpackard.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A RollingHistogram keeps the latest {@link #WINDOW} samples of some measurement, such as how long a frame took to
+ * paint, so that percentiles like the median and the 99th percentile can be read from them. Old samples drop out as new
+ * ones come in, so the percentiles follow what the program is doing now rather than everything it has ever done.
+ * Samples can be recorded and read from any thread.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see PerformanceStats
+ */
+public class RollingHistogram {
+
+	/**
+	 * The number of samples kept.
+	 */
+	public static final int WINDOW = 1024;
+
+	/**
+	 * The kept samples, in a ring that wraps around once it's full.
+	 */
+	private final long[] samples = new long[WINDOW];
+
+	/**
+	 * The number of samples ever recorded.
+	 */
+	private long count = 0;
+
+	/**
+	 * The latest sample recorded.
+	 */
+	private long last = 0;
+
+
+	/**
+	 * Records a sample, dropping the oldest one if the window is full.
+	 *
+	 * @param sample The sample to record
+	 */
+	public synchronized void record(long sample) {
+		samples[(int) (count % WINDOW)] = sample;
+		count++;
+		last = sample;
+	}
+
+	/**
+	 * @return The number of samples ever recorded
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The latest sample recorded, or 0 if nothing has been recorded
+	 */
+	public synchronized long getLast() {
+		return last;
+	}
+
+	/**
+	 * @return The average of the kept samples, or 0 if nothing has been recorded
+	 */
+	public synchronized double getMean() {
+		int size = size();
+		if (size == 0) {
+			return 0;
+		}
+		long total = 0;
+		for (int i = 0; i < size; i++) {
+			total += samples[i];
+		}
+		return (double) total / size;
+	}
+
+	/**
+	 * @return The largest of the kept samples, or 0 if nothing has been recorded
+	 */
+	public synchronized long getMax() {
+		long max = 0;
+		for (int i = 0; i < size(); i++) {
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the given percentile of the kept samples: the smallest sample that at least that percent of the samples
+	 * are less than or equal to.
+	 *
+	 * @param percent The percentile, from 0 to 100
+	 * @return The sample at that percentile, or 0 if nothing has been recorded
+	 */
+	public synchronized long getPercentile(double percent) {
+		int size = size();
+		if (size == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(samples, size);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percent / 100 * size);
+		return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+	}
+
+	/**
+	 * @return The number of samples in the window
+	 */
+	private int size() {
+		return (int) Math.min(count, WINDOW);
+	}
+
+	/**
+	 * @return A short summary of the samples, for debugging
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("%d samples, p50 %d, p99 %d, max %d", count, getPercentile(50), getPercentile(99), getMax());
+	}
+}
@@ -14,7 +14,7 @@ import java.awt.*;
  * tools the color to use.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public class ColorChooser extends JPanel implements Updatable{
@@ -84,6 +84,7 @@ public class ColorChooser extends JPanel implements Updatable{
 		setOpaque(true);
 		setBackground(new Color(0x444448));
 		setFocusable(false);
+		typeSwitch.addActionListener(e -> switchType());
 		add(typeSwitch);
 		add(new ColorPreview(this, 152));
 		setForeSelected(true);
@@ -91,20 +92,6 @@ public class ColorChooser extends JPanel implements Updatable{
 	}
 
 
-	/**
-	 * Updates the sliders and switches to a different color system if told to do so.
-	 */
-	@Override
-	public void update() {
-		if (typeSwitch.flagged()) {
-			switchType();
-		}
-		slider1.update();
-		slider2.update();
-		slider3.update();
-		sliderA.update();
-	}
-
 	/**
 	 * Repositions itself inside the parent Window.
 	 */
@@ -114,9 +101,11 @@ public class ColorChooser extends JPanel implements Updatable{
 	}
 
 	/**
-	 * Updates the colors of the slider bars when the color is changed.
+	 * Updates the colors of the slider bars when the color is changed, recording how long it took in the Window's
+	 * PerformanceStats.
 	 */
 	public void updateColor() {
+		long start = System.nanoTime();
 		Color color;
 
 		if (typeSwitch.getState()) {
@@ -138,6 +127,7 @@ public class ColorChooser extends JPanel implements Updatable{
 		sliderA.paintBar();
 
 		repaint();
+		parent.getPerformanceStats().getColorUpdateTime().record((System.nanoTime() - start) / 1000);
 	}
 
 	/**
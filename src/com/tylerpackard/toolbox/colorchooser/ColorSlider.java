@@ -1,5 +1,6 @@
 package com.tylerpackard.toolbox.colorchooser;
 
+import com.tylerpackard.ui.Checkerboard;
 import com.tylerpackard.ui.TextField;
 
 import javax.swing.*;
@@ -9,10 +10,10 @@ import java.awt.image.BufferedImage;
 
 /**
  * The ColorSlider lets the user change one value of the color either by sliding the slider, entering a value into the
- * text field, or clicking up and down the arrows.
+ * text field, or clicking up and down the arrows. Holding an arrow down keeps stepping the value until it's released.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
@@ -72,11 +73,6 @@ class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
 	 */
 	private final int barWidth = 8;
 
-	/**
-	 * Whether or not the mouse is currently down.
-	 */
-	private boolean mouseDown;
-
 	/**
 	 * The last X position of the mouse.
 	 */
@@ -88,9 +84,9 @@ class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
 	private int mouseY;
 
 	/**
-	 * The time since the mouse was last updated.
+	 * Steps the value every 200 milliseconds while an arrow is held down. It only runs while the mouse is pressed.
 	 */
-	private long lastMouseUpdate = 0;
+	private final Timer repeatTimer = new Timer(200, e -> step());
 
 	/**
 	 * The X positions of the arrows.
@@ -179,30 +175,27 @@ class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
 
 
 	/**
-	 * Detects if the arrows are clicked and increments or decrements the value.
+	 * Increments or decrements the value if the mouse was pressed on one of the arrows.
 	 */
-	public void update() {
-		if (mouseDown && System.nanoTime() - lastMouseUpdate >= 200_000_000) {
-			if (mouseX >= arrowX[0]) {
-				if (mouseY <= 8) {
-					if (value < limit) {
-						value++;
-						textField.setText(Integer.toString(value));
-						parent.updateColor();
-					} else {
-						Toolkit.getDefaultToolkit().beep();
-					}
-				} else if (mouseY >= 12) {
-					if (value > 0) {
-						value--;
-						textField.setText(Integer.toString(value));
-						parent.updateColor();
-					} else {
-						Toolkit.getDefaultToolkit().beep();
-					}
+	private void step() {
+		if (mouseX >= arrowX[0]) {
+			if (mouseY <= 8) {
+				if (value < limit) {
+					value++;
+					textField.setText(Integer.toString(value));
+					parent.updateColor();
+				} else {
+					Toolkit.getDefaultToolkit().beep();
+				}
+			} else if (mouseY >= 12) {
+				if (value > 0) {
+					value--;
+					textField.setText(Integer.toString(value));
+					parent.updateColor();
+				} else {
+					Toolkit.getDefaultToolkit().beep();
 				}
 			}
-			lastMouseUpdate = System.nanoTime();
 		}
 	}
 
@@ -340,17 +333,8 @@ class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
 		int height = barBackground.getHeight();
 
 		Graphics g = barBackground.getGraphics();
-		g.setColor(new Color(0xCCCCD2));
-		g.fillRect(0, 0, width, 8);
-
-		int squareSize = 4;
-		g.setColor(Color.WHITE);
-		for (int x = 0; x < width; x += squareSize * 2) {
-			for (int y = 0; y < height; y += squareSize * 2) {
-				g.fillRect(x, y, squareSize, squareSize);
-				g.fillRect(x + squareSize, y + squareSize, squareSize, squareSize);
-			}
-		}
+		Checkerboard.fill(g, 4, false, 0, 0, width, height);
+		g.dispose();
 	}
 
 	/**
@@ -364,30 +348,33 @@ class ColorSlider extends JPanel implements MouseListener, MouseMotionListener {
 	}
 
 	/**
-	 * Jumps the slider to location clicked if valid and updates the bar.
+	 * Jumps the slider to location clicked if valid and updates the bar. If an arrow was pressed, the value is stepped
+	 * right away and the repeat timer is started.
 	 *
 	 * @param e The pressing event
 	 */
 	@Override
 	public void mousePressed(MouseEvent e) {
-		mouseDown = true;
 		mouseX = e.getX();
 		mouseY = e.getY();
 		if (mouseX > barStart && mouseX <= barEnd) {
 			value = (int)Math.round((e.getX() - barStart) / scale);
 			textField.setText(Integer.toString(value));
 			parent.updateColor();
+		} else if (mouseX >= arrowX[0]) {
+			step();
+			repeatTimer.start();
 		}
 	}
 
 	/**
-	 * Lets the slider know that the mouse isn't pressed.
+	 * Stops the repeat timer now that the mouse isn't pressed.
 	 *
 	 * @param e The releasing event
 	 */
 	@Override
 	public void mouseReleased(MouseEvent e) {
-		mouseDown = false;
+		repeatTimer.stop();
 	}
 
 	/**
@@ -13,7 +13,7 @@ import java.awt.*;
  * The ToolChooser contains all of the tools and creates an interface that lets the user select a tool.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public class ToolChooser extends JPanel implements Updatable {
@@ -85,14 +85,6 @@ public class ToolChooser extends JPanel implements Updatable {
 		reposition();
 	}
 
-	/**
-	 * Called by the parent Window when it needs to be updated, unused.
-	 */
-	@Override
-	public void update() {
-
-	}
-
 	/**
 	 * Repositions the ToolChooser inside the Window. Spans the entire height of the Window and stays on the right side.
 	 */
@@ -1,14 +1,16 @@
 package com.tylerpackard.tools;
 
-import com.tylerpackard.edits.DrawEdit;
+import com.tylerpackard.edits.Edit;
+import com.tylerpackard.edits.FillEdit;
+import com.tylerpackard.edits.TileEdit;
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.toolbox.colorchooser.ColorChooser;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * The Bucket Tool allows an area of a uniform color to be completely replaced by another color. The Bucket tool only
@@ -16,10 +18,15 @@ import java.util.LinkedList;
  * keyboard shortcut is 'A'.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 3
  * @since 0.0.1
  */
 public class Bucket extends Tool {
+	/**
+	 * Fills on images with more pixels than this are recorded as tile snapshots instead of a fill mask.
+	 */
+	private static final long TILE_UNDO_PIXELS = 2048L * 2048L;
+
 	/**
 	 * The color chooser to get the fill color from
 	 */
@@ -45,16 +52,19 @@ public class Bucket extends Tool {
 
 
 	/**
-	 * Fills the clicked area with the color chooser's current color. It uses the flood fill algorithm to do this, and
-	 * stores points in a linked-list instead of using recursion to prevent stack overflow errors when filling large
-	 * sections.
+	 * Fills the clicked area with the color chooser's current color. It uses a scanline flood fill: each seed is
+	 * widened into the longest horizontal span of the target color, the span is filled in one go, and one new seed is
+	 * pushed for every run of the target color in the rows above and below it. Seeds are kept on a primitive int stack
+	 * instead of using recursion to prevent stack overflow errors when filling large sections. On large images the fill
+	 * is recorded by snapshotting the tiles it touches, since a mask over the fill's bounds could get very big.
+	 * The rows above and below each span are read a span at a time rather than pixel by pixel.
 	 *
 	 * @param e The mouse event
 	 * @param image The image being edited
 	 * @param zoom How far the image has been zoomed in
 	 */
 	@Override
-	public void clicked(MouseEvent e, BufferedImage image, int zoom) {
+	public void clicked(MouseEvent e, PixelStore image, int zoom) {
 		int x = e.getX() / zoom;
 		int y = e.getY() / zoom;
 
@@ -66,25 +76,89 @@ public class Bucket extends Tool {
 		int imageHeight = image.getHeight();
 		int targetRGB = image.getRGB(x, y);
 		int newRGB = colorChooser.getColor().getRGB();
-		DrawEdit edit = new DrawEdit(this, image);
-
-		LinkedList<Point> points = new LinkedList<>();
-		points.add(new Point(x, y));
-
-		while (!points.isEmpty()) {
-			Point p = points.remove();
-			if (p.x >= 0 && p.y >= 0 && p.x < imageWidth && p.y < imageHeight) {
-				if (targetRGB == image.getRGB(p.x, p.y)) {
-					edit.addChange(p.x, p.y, targetRGB, newRGB);
-					points.add(new Point(p.x + 1, p.y));
-					points.add(new Point(p.x - 1, p.y));
-					points.add(new Point(p.x, p.y + 1));
-					points.add(new Point(p.x, p.y - 1));
+		FillEdit fillEdit = null;
+		TileEdit tileEdit = null;
+		if ((long) imageWidth * imageHeight > TILE_UNDO_PIXELS) {
+			tileEdit = new TileEdit(this, image);
+		} else {
+			fillEdit = new FillEdit(this, image, targetRGB, newRGB);
+		}
+
+		int[] row = new int[imageWidth];
+		int[] seeds = new int[64];
+		int seedCount = 0;
+		seeds[seedCount++] = x;
+		seeds[seedCount++] = y;
+
+		while (seedCount > 0) {
+			int seedY = seeds[--seedCount];
+			int seedX = seeds[--seedCount];
+			if (image.getRGB(seedX, seedY) != targetRGB) {
+				continue;
+			}
+
+			int left = seedX;
+			while (left > 0 && image.getRGB(left - 1, seedY) == targetRGB) {
+				left--;
+			}
+			int right = seedX + 1;
+			while (right < imageWidth && image.getRGB(right, seedY) == targetRGB) {
+				right++;
+			}
+
+			if (tileEdit != null) {
+				tileEdit.touch(left, seedY, right - left, 1);
+				image.fillSpan(left, seedY, right - left, newRGB);
+			} else {
+				image.fillSpan(left, seedY, right - left, newRGB);
+				fillEdit.addSpan(left, seedY, right - left);
+			}
+
+			for (int ny = seedY - 1; ny <= seedY + 1; ny += 2) {
+				if (ny < 0 || ny >= imageHeight) {
+					continue;
+				}
+				image.getSpan(left, ny, right - left, row, 0);
+				boolean inRun = false;
+				for (int nx = left; nx < right; nx++) {
+					if (row[nx - left] == targetRGB) {
+						if (!inRun) {
+							if (seedCount + 2 > seeds.length) {
+								seeds = Arrays.copyOf(seeds, seeds.length * 2);
+							}
+							seeds[seedCount++] = nx;
+							seeds[seedCount++] = ny;
+							inRun = true;
+						}
+					} else {
+						inRun = false;
+					}
 				}
 			}
 		}
 
+		Edit edit;
+		if (tileEdit != null) {
+			tileEdit.finish();
+			edit = tileEdit;
+		} else {
+			fillEdit.finish();
+			edit = fillEdit;
+		}
 		parent.getEditManager().push(edit);
+		getCanvas().repaintImage(edit.getBounds());
+	}
+
+	/**
+	 * Returns the bounds of the mouse icon, which sits a little lower than the default icon.
+	 *
+	 * @param x X position of the mouse
+	 * @param y Y position of the mouse
+	 * @return The area covered by the mouse icon
+	 */
+	@Override
+	public Rectangle getMouseBounds(int x, int y) {
+		return new Rectangle(x - 1, y - 27, 32, 32);
 	}
 
 	/**
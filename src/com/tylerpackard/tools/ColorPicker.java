@@ -1,6 +1,7 @@
 package com.tylerpackard.tools;
 
 import com.tylerpackard.toolbox.colorchooser.ColorChooser;
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 
 import javax.swing.*;
@@ -9,7 +10,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 
 /**
  * The ColorPicker is a tool that detects the color of the pixel clicked on. It can be selected by pressing 'Q' or
@@ -57,7 +57,7 @@ public class ColorPicker extends Tool {
 	 * @param zoom How much the image is zoomed in
 	 */
 	@Override
-	public void clicked(MouseEvent e, BufferedImage image, int zoom) {
+	public void clicked(MouseEvent e, PixelStore image, int zoom) {
 		colorChooser.setColor(new Color(image.getRGB(e.getX() / zoom, e.getY() / zoom)));
 	}
 
@@ -1,17 +1,17 @@
 package com.tylerpackard.tools;
 
 import com.tylerpackard.edits.DrawEdit;
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 
 import javax.swing.*;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 
 /**
  * The Eraser is a tool that removes the pixels where clicked or dragged. The keyboard shortcut is the 'E' key.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public class Eraser extends Tool {
@@ -56,7 +56,7 @@ public class Eraser extends Tool {
 	 * @param zoom How far the image is zoomed in
 	 */
 	@Override
-	public void clicked(MouseEvent e, BufferedImage image, int zoom) {
+	public void clicked(MouseEvent e, PixelStore image, int zoom) {
 		DrawEdit edit = new DrawEdit(this, image);
 		parent.getEditManager().push(edit);
 
@@ -75,14 +75,13 @@ public class Eraser extends Tool {
 	/**
 	 * Erases the pixels where dragged and adds it to an edit.
 	 *
-	 * @param e The mouse event
-	 * @param x The X position of the drag
-	 * @param y The Y position of the drag
+	 * @param points The X and Y positions of the mouse, one pair after another
+	 * @param count The number of points
 	 * @param image The image to edit
-	 * @param zoom How far the image is zoomed in (Needed to scale mouse event)
+	 * @param zoom How far the image is zoomed in (Needed to scale the points)
 	 */
 	@Override
-	public void dragged(MouseEvent e, int x, int y, BufferedImage image, int zoom) {
-		drawLine(e, x, y, image, fullAlpha, zoom);
+	public void dragged(int[] points, int count, PixelStore image, int zoom) {
+		drawPolyline(points, count, image, fullAlpha, zoom);
 	}
 }
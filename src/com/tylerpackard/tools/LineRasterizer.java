@@ -0,0 +1,181 @@
+package com.tylerpackard.tools;
+
+/**
+ * The LineRasterizer turns a line between two pixels into the horizontal spans of pixels that a tool should draw. It
+ * steps along the line the same way the Bresenham algorithm does, but the line is clipped to the image first, so only
+ * the steps that land inside the image are walked no matter how far outside of it the ends are. The clipping works on
+ * the step number instead of on the end points, in the style of Liang-Barsky, which keeps exactly the same pixels as
+ * the unclipped line would have drawn.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ * @see Tool#drawLine(java.awt.event.MouseEvent, int, int, com.tylerpackard.image.PixelStore, int, int)
+ */
+final class LineRasterizer {
+
+	/**
+	 * Receives the spans of a rasterized line.
+	 */
+	interface SpanSink {
+
+		/**
+		 * Called for each horizontal span of pixels on the line.
+		 *
+		 * @param x The X position of the leftmost pixel
+		 * @param y The Y position of the span
+		 * @param length The number of pixels in the span
+		 */
+		void span(int x, int y, int length);
+	}
+
+
+	/**
+	 * The rasterizer only has static methods.
+	 */
+	private LineRasterizer() {}
+
+
+	/**
+	 * Rasterizes the line from (x0, y0) to (x1, y1) inside an image of the given size. Points that follow on from each
+	 * other along a row are joined into a single span, and a horizontal line is sent as one span without walking it at
+	 * all. If the line leaves the image, the first point outside of it is clamped to the edge it crossed (or to both
+	 * edges, at a corner), so that a quick stroke off the side of the image still reaches the edge.
+	 *
+	 * @param x0 The X position the line starts at
+	 * @param y0 The Y position the line starts at
+	 * @param x1 The X position the line ends at
+	 * @param y1 The Y position the line ends at
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param sink The sink to send the spans to
+	 */
+	static void rasterize(int x0, int y0, int x1, int y1, int width, int height, SpanSink sink) {
+		int dx = x1 - x0;
+		int dy = y1 - y0;
+		boolean xMajor = Math.abs(dx) > Math.abs(dy);
+
+		// Work in terms of the major axis, which moves every step, and the minor axis, which moves on some of them
+		int a0 = xMajor ? x0 : y0;
+		int b0 = xMajor ? y0 : x0;
+		int da = Integer.signum(xMajor ? dx : dy);
+		int db = Integer.signum(xMajor ? dy : dx);
+		int aLimit = xMajor ? width : height;
+		int bLimit = xMajor ? height : width;
+		int longest = Math.abs(xMajor ? dx : dy);
+		int shortest = Math.abs(xMajor ? dy : dx);
+		int half = longest >> 1;
+
+		// Clip the steps against the major axis, where the position is linear in the step number
+		long first = 0;
+		long last = longest;
+		if (da > 0) {
+			first = Math.max(first, -a0);
+			last = Math.min(last, aLimit - 1L - a0);
+		} else if (da < 0) {
+			first = Math.max(first, a0 - (aLimit - 1L));
+			last = Math.min(last, a0);
+		} else if (a0 < 0 || a0 >= aLimit) {
+			return;
+		}
+
+		// Then against the minor axis, where the position moves floor((half + step * shortest) / longest) times
+		long qMin = db > 0 ? -b0 : b0 - (bLimit - 1L);
+		long qMax = db > 0 ? bLimit - 1L - b0 : b0;
+		if (db == 0) {
+			if (b0 < 0 || b0 >= bLimit) {
+				return;
+			}
+		} else {
+			if (qMin > 0) {
+				first = Math.max(first, Math.floorDiv(qMin * longest - half + shortest - 1, shortest));
+			}
+			if (qMax < shortest) {
+				last = Math.min(last, Math.floorDiv((qMax + 1) * longest - half - 1, shortest));
+			}
+		}
+		if (first > last) {
+			return;
+		}
+
+		if (db == 0 && xMajor) {
+			int start = (int) (a0 + da * first);
+			int end = (int) (a0 + da * last);
+			sink.span(Math.min(start, end), b0, (int) (last - first) + 1);
+			emitExit(a0, b0, da, db, longest, shortest, half, last, xMajor, width, height, sink);
+			return;
+		}
+
+		int a = (int) (a0 + da * first);
+		int b = b0 + db * moves(first, longest, shortest, half);
+		int numerator = longest == 0 ? 0 : (int) ((half + first * shortest) % longest);
+		int spanStart = 0, spanEnd = 0, spanY = -1;
+		for (long i = first; i <= last; i++) {
+			int x = xMajor ? a : b;
+			int y = xMajor ? b : a;
+			if (y == spanY && x == spanEnd) {
+				spanEnd++;
+			} else if (y == spanY && x == spanStart - 1) {
+				spanStart--;
+			} else {
+				if (spanY >= 0) {
+					sink.span(spanStart, spanY, spanEnd - spanStart);
+				}
+				spanStart = x;
+				spanEnd = x + 1;
+				spanY = y;
+			}
+
+			a += da;
+			numerator += shortest;
+			if (numerator >= longest) {
+				numerator -= longest;
+				b += db;
+			}
+		}
+		sink.span(spanStart, spanY, spanEnd - spanStart);
+		emitExit(a0, b0, da, db, longest, shortest, half, last, xMajor, width, height, sink);
+	}
+
+	/**
+	 * Sends the point just after the visible part of the line, clamped to the edge of the image, if the line goes on
+	 * past the image.
+	 *
+	 * @param a0 The major axis position the line starts at
+	 * @param b0 The minor axis position the line starts at
+	 * @param da The step along the major axis
+	 * @param db The step along the minor axis
+	 * @param longest The number of steps in the line
+	 * @param shortest The distance covered along the minor axis
+	 * @param half The starting numerator
+	 * @param last The last step inside the image
+	 * @param xMajor Whether or not the major axis is X
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param sink The sink to send the point to
+	 */
+	private static void emitExit(int a0, int b0, int da, int db, int longest, int shortest, int half, long last,
+								 boolean xMajor, int width, int height, SpanSink sink) {
+		if (last >= longest) {
+			return;
+		}
+		int a = (int) (a0 + da * (last + 1));
+		int b = b0 + db * moves(last + 1, longest, shortest, half);
+		int x = xMajor ? a : b;
+		int y = xMajor ? b : a;
+		sink.span(Math.max(0, Math.min(width - 1, x)), Math.max(0, Math.min(height - 1, y)), 1);
+	}
+
+	/**
+	 * Returns how many times the minor axis has moved by the given step.
+	 *
+	 * @param step The step number
+	 * @param longest The number of steps in the line
+	 * @param shortest The distance covered along the minor axis
+	 * @param half The starting numerator
+	 * @return The number of moves along the minor axis
+	 */
+	private static int moves(long step, int longest, int shortest, int half) {
+		return longest == 0 ? 0 : (int) ((half + step * shortest) / longest);
+	}
+}
@@ -1,20 +1,20 @@
 package com.tylerpackard.tools;
 
 import com.tylerpackard.edits.DrawEdit;
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.toolbox.colorchooser.ColorChooser;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 
 /**
  * The Pencil Tool allows the user to draw lines on the image, and uses the selected color from the ColorChooser. Its
  * keyboard shortcut is the 'W' key.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public class Pencil extends Tool{
@@ -61,7 +61,7 @@ public class Pencil extends Tool{
 	 * @param zoom How far the image is zoomed in
 	 */
 	@Override
-	public void clicked(MouseEvent e, BufferedImage image, int zoom) {
+	public void clicked(MouseEvent e, PixelStore image, int zoom) {
 		DrawEdit edit = new DrawEdit(this, image);
 		parent.getEditManager().push(edit);
 
@@ -80,17 +80,16 @@ public class Pencil extends Tool{
 	/**
 	 * Draws on the pixels where dragged with the selected color of the ColorChooser and adds it to an edit.
 	 *
-	 * @param e The mouse event
-	 * @param x The X position of the drag
-	 * @param y The Y position of the drag
+	 * @param points The X and Y positions of the mouse, one pair after another
+	 * @param count The number of points
 	 * @param image The image to edit
-	 * @param zoom How far the image is zoomed in (Needed to scale mouse event)
+	 * @param zoom How far the image is zoomed in (Needed to scale the points)
 	 */
 	@Override
-	public void dragged(MouseEvent e, int x, int y, BufferedImage image, int zoom) {
-		prevX = e.getX();
-		prevY = e.getY();
-		drawLine(e, x, y, image, colorChooser.getColor().getRGB(), zoom);
+	public void dragged(int[] points, int count, PixelStore image, int zoom) {
+		prevX = points[2 * count - 2];
+		prevY = points[2 * count - 1];
+		drawPolyline(points, count, image, colorChooser.getColor().getRGB(), zoom);
 	}
 
 	/**
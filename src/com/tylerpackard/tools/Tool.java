@@ -1,6 +1,8 @@
 package com.tylerpackard.tools;
 
+import com.tylerpackard.canvas.Canvas;
 import com.tylerpackard.edits.DrawEdit;
+import com.tylerpackard.image.PixelStore;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 
 import javax.imageio.ImageIO;
@@ -18,7 +20,7 @@ import java.awt.image.BufferedImage;
  * with predefined methods to load images, draw the mouse, and draw lines.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 4
  * @since 0.0.1
  * @see ToolChooser
  */
@@ -108,6 +110,15 @@ public abstract class Tool extends JPanel implements MouseListener{
 		return defaultBG;
 	}
 
+	/**
+	 * Returns the Canvas that the tool draws on.
+	 *
+	 * @return The Canvas being drawn on
+	 */
+	public Canvas getCanvas() {
+		return parent.getParent().getCanvas();
+	}
+
 	/**
 	 * Returns the button icon.
 	 *
@@ -192,23 +203,25 @@ public abstract class Tool extends JPanel implements MouseListener{
 	 * @param image The image to edit
 	 * @param rgb The color to use
 	 */
-	public void clicked(MouseEvent e, BufferedImage image, int rgb) {}
+	public void clicked(MouseEvent e, PixelStore image, int rgb) {}
 
 	/**
 	 * Occurs when the mouse is dragged over the Canvas. Should be overridden unless the tool shouldn't do anything
-	 * when dragged.
+	 * when dragged. The Canvas collects every point the mouse was dragged through since it last called this and hands
+	 * them all over at once, so a tool sees the whole path even when the mouse sends events faster than the screen
+	 * updates.
 	 *
-	 * @param e The mouse event
-	 * @param x2 The last X position of the mouse
-	 * @param y2 The last Y position of the mouse
+	 * @param points The X and Y positions of the mouse, one pair after another, starting with where it was before
+	 *               these drags
+	 * @param count The number of points
 	 * @param image The image to edit
-	 * @param zoom How far the image is zoomed in (Needed to scale mouse event)
+	 * @param zoom How far the image is zoomed in (Needed to scale the points)
 	 */
-	public void dragged(MouseEvent e, int x2, int y2, BufferedImage image, int zoom) {}
+	public void dragged(int[] points, int count, PixelStore image, int zoom) {}
 
 	/**
 	 * This method uses the Bresenham algorithm to draw a line from the mouse's last position, to its current position.
-	 * To make points, it appends to a new edit.
+	 * The line is clipped to the image before it's walked, and the spans it's made of are added to the current edit.
 	 *
 	 * @param e The mouse event
 	 * @param x2 The last X position of the mouse
@@ -216,95 +229,31 @@ public abstract class Tool extends JPanel implements MouseListener{
 	 * @param image The image to edit
 	 * @param rgb The color to use
 	 * @param zoom How far the image is zoomed in (Needed to scale mouse event)
+	 * @see LineRasterizer
 	 */
-	public void drawLine(MouseEvent e, int x2, int y2, BufferedImage image, int rgb, int zoom) {
+	public void drawLine(MouseEvent e, int x2, int y2, PixelStore image, int rgb, int zoom) {
 		DrawEdit edit = (DrawEdit) parent.getEditManager().peek();
-		int x = e.getX() / zoom;
-		int y= e.getY() / zoom;
-		x2 /= zoom;
-		y2 /= zoom;
-		int width = x2 - x;
-		int height = y2 - y;
-		int longest = Math.abs(width);
-		int shortest = Math.abs(height);
-		int dx1 = 0, dy1 = 0, dx2 = 0, dy2 = 0;
-		boolean wasIn = false;
-
-		if (width < 0) {
-			dx1 = -1;
-			dx2 = -1;
-		} else if (width > 0) {
-			dx1 = 1;
-			dx2 = 1;
-		}
-
-		if (height < 0) {
-			dy1 = -1;
-		} else if (height > 0) {
-			dy1 = 1;
-		}
-
-		if (longest <= shortest) {
-			longest = Math.abs(height);
-			shortest = Math.abs(width);
-			if (height < 0) {
-				dy2 = -1;
-			} else if (height > 0) {
-				dy2 = 1;
-			}
-			dx2 = 0;
-		}
-
-		int numerator = longest >> 1;
-		for (int i = 0; i <= longest; i++) {
-			wasIn = drawPoint(x, y, wasIn, image, rgb, edit);
-			numerator += shortest;
-			if (numerator >= longest) {
-				numerator -= longest;
-				x += dx1;
-				y += dy1;
-			} else {
-				x += dx2;
-				y += dy2;
-			}
-		}
+		LineRasterizer.rasterize(e.getX() / zoom, e.getY() / zoom, x2 / zoom, y2 / zoom, image.getWidth(),
+				image.getHeight(), (x, y, length) -> edit.addSpan(x, y, length, rgb));
 	}
 
 	/**
-	 * Draws a point of a line if it's legal. Only called by the drawLine method.
+	 * Draws lines joining each point of a drag path to the next one, adding them all to the current edit.
 	 *
-	 * @param x The X position of the drawing
-	 * @param y The Y position of the drawing
-	 * @param wasIn Whether or not the last point drawn was inside the bounds
+	 * @param points The X and Y positions of the mouse, one pair after another
+	 * @param count The number of points
 	 * @param image The image to edit
 	 * @param rgb The color to use
+	 * @param zoom How far the image is zoomed in (Needed to scale the points)
+	 * @see #dragged(int[], int, PixelStore, int)
 	 */
-	private boolean drawPoint(int x, int y, boolean wasIn, BufferedImage image, int rgb, DrawEdit edit) {
-		if (x < 0) {
-			if (wasIn) {
-				edit.addChange(0, y, image.getRGB(0, y), rgb);
-				wasIn = false;
-			}
-		} else if (x >= image.getWidth()) {
-			if (wasIn) {
-				edit.addChange(image.getWidth() - 1, y, image.getRGB(image.getWidth() - 1, y), rgb);
-				wasIn = false;
-			}
-		} else if (y < 0) {
-			if (wasIn) {
-				edit.addChange(x, 0, image.getRGB(x, 0), rgb);
-				wasIn = false;
-			}
-		} else if (y >= image.getHeight()) {
-			if (wasIn) {
-				edit.addChange(x, image.getHeight() - 1, image.getRGB(x, image.getHeight() - 1), rgb);
-				wasIn = false;
-			}
-		} else {
-			edit.addChange(x, y, image.getRGB(x, y), rgb);
-			wasIn = true;
+	public void drawPolyline(int[] points, int count, PixelStore image, int rgb, int zoom) {
+		DrawEdit edit = (DrawEdit) parent.getEditManager().peek();
+		for (int i = 1; i < count; i++) {
+			LineRasterizer.rasterize(points[2 * i - 2] / zoom, points[2 * i - 1] / zoom, points[2 * i] / zoom,
+					points[2 * i + 1] / zoom, image.getWidth(), image.getHeight(),
+					(x, y, length) -> edit.addSpan(x, y, length, rgb));
 		}
-		return wasIn;
 	}
 
 	/**
@@ -334,4 +283,16 @@ public abstract class Tool extends JPanel implements MouseListener{
 	public void drawMouse(Graphics g, int x, int y) {
 		g.drawImage(mouse, x, y - 31, 32, 32, null);
 	}
+
+	/**
+	 * Returns the area covered by the mouse icon when drawn at the given position, so that only that area needs to be
+	 * repainted when the mouse moves. Should be overridden by tools that draw their mouse icon somewhere else.
+	 *
+	 * @param x The X position of the mouse
+	 * @param y The Y position of the mouse
+	 * @return The area covered by the mouse icon
+	 */
+	public Rectangle getMouseBounds(int x, int y) {
+		return new Rectangle(x, y - 31, 32, 32);
+	}
 }
@@ -0,0 +1,99 @@
+package com.tylerpackard.ui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * The Checkerboard draws the grey and white squares shown behind translucent colors. A single tile of the pattern is
+ * rendered once for each square size and display scale and then reused as a TexturePaint, so filling any area with
+ * the pattern is a single fill instead of one fill per square.
+ *
+ * @author Tyler Packard
+ * @version 1
+ * @since 0.0.1
+ */
+public class Checkerboard {
+
+	/**
+	 * The color of the darker squares.
+	 */
+	private static final Color DARK = new Color(0xCCCCD2);
+
+	/**
+	 * The color of the lighter squares.
+	 */
+	private static final Color LIGHT = Color.WHITE;
+
+	/**
+	 * The cached paints, keyed by square size and display scale.
+	 *
+	 * @see #key(int, int)
+	 */
+	private static final HashMap<Long, TexturePaint> paints = new HashMap<>();
+
+
+	/**
+	 * Only has static methods.
+	 */
+	private Checkerboard() {}
+
+
+	/**
+	 * Fills the given area with the checkerboard. The pattern is anchored to the origin of the Graphics, so adjacent
+	 * fills line up with each other.
+	 *
+	 * @param g The Graphics to paint with
+	 * @param squareSize The size of each square
+	 * @param retina Whether or not the display has twice the pixel density
+	 * @param x The X position of the area
+	 * @param y The Y position of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 */
+	public static void fill(Graphics g, int squareSize, boolean retina, int x, int y, int width, int height) {
+		Graphics2D g2d = (Graphics2D) g;
+		Paint oldPaint = g2d.getPaint();
+		g2d.setPaint(getPaint(squareSize, retina ? 2 : 1));
+		g2d.fillRect(x, y, width, height);
+		g2d.setPaint(oldPaint);
+	}
+
+	/**
+	 * Returns the paint for the given square size and display scale, rendering its tile if it hasn't been cached yet.
+	 * The tile is rendered at the display's resolution so it stays sharp on high density displays.
+	 *
+	 * @param squareSize The size of each square
+	 * @param scale How many device pixels there are per pixel
+	 * @return The checkerboard paint
+	 */
+	public static synchronized TexturePaint getPaint(int squareSize, int scale) {
+		TexturePaint paint = paints.get(key(squareSize, scale));
+		if (paint == null) {
+			int size = squareSize * scale;
+			BufferedImage tile = new BufferedImage(size * 2, size * 2, BufferedImage.TYPE_INT_RGB);
+			Graphics g = tile.getGraphics();
+			g.setColor(DARK);
+			g.fillRect(0, 0, size * 2, size * 2);
+			g.setColor(LIGHT);
+			g.fillRect(0, 0, size, size);
+			g.fillRect(size, size, size, size);
+			g.dispose();
+
+			paint = new TexturePaint(tile, new Rectangle(0, 0, squareSize * 2, squareSize * 2));
+			paints.put(key(squareSize, scale), paint);
+		}
+		return paint;
+	}
+
+	/**
+	 * Combines a square size and scale into a key for the paint cache.
+	 *
+	 * @param squareSize The size of each square
+	 * @param scale How many device pixels there are per pixel
+	 * @return The key of the paint
+	 */
+	private static long key(int squareSize, int scale) {
+		return ((long) squareSize << 32) | scale;
+	}
+}
@@ -2,15 +2,18 @@ package com.tylerpackard.ui;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayList;
 
 /**
  * The Switch provides two options which the user can toggle between by clicking the switch. It displays the two options
- * on two sections of a button, and highlights the selected one.
+ * on two sections of a button, and highlights the selected one. Action listeners are told whenever it's clicked.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 2
  * @since 0.0.1
  */
 public class Switch extends JPanel implements MouseListener{
@@ -31,9 +34,9 @@ public class Switch extends JPanel implements MouseListener{
 	private boolean state = true;
 
 	/**
-	 * Turns true if the switch gets updated.
+	 * The listeners to tell when the switch is clicked.
 	 */
-	private boolean flag = false;
+	private final ArrayList<ActionListener> listeners = new ArrayList<>();
 
 	/**
 	 * The colors for the foregrounds and backgrounds of each state.
@@ -96,20 +99,16 @@ public class Switch extends JPanel implements MouseListener{
 	}
 
 	/**
-	 * Returns whether or not a change has been made and resets the flag to false if so.
+	 * Adds a listener to tell whenever the switch is clicked.
 	 *
-	 * @return Whether or not a change has happened
+	 * @param listener The listener to add
 	 */
-	public boolean flagged() {
-		if (flag) {
-			flag = false;
-			return true;
-		}
-		return false;
+	public void addActionListener(ActionListener listener) {
+		listeners.add(listener);
 	}
 
 	/**
-	 * Switches the selection to the side clicked.
+	 * Switches the selection to the side clicked and tells the listeners.
 	 *
 	 * @param e The clicking event
 	 */
@@ -128,7 +127,10 @@ public class Switch extends JPanel implements MouseListener{
 			rightLabel.setBackground(falseBack);
 			rightLabel.setForeground(falseFore);
 		}
-		flag = true;
+		ActionEvent event = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, state ? leftLabel.getText() : rightLabel.getText());
+		for (ActionListener listener : listeners) {
+			listener.actionPerformed(event);
+		}
 	}
 
 	/**
@@ -5,11 +5,6 @@ package com.tylerpackard.ui;
  */
 public interface Updatable {
 
-	/**
-	 * Update should contain code that does anything that the component needs to do periodically, such as repainting.
-	 */
-	void update();
-
 	/**
 	 * Reposition should contain code that repositions the component inside of its parent.
 	 */
@@ -5,6 +5,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -12,7 +13,14 @@ import java.util.ArrayList;
 import com.apple.eawt.AppEvent.FullScreenEvent;
 import com.apple.eawt.FullScreenListener;
 import com.tylerpackard.canvas.Canvas;
+import com.tylerpackard.edits.DrawEdit;
 import com.tylerpackard.edits.EditManager;
+import com.tylerpackard.edits.RecoveryJournal;
+import com.tylerpackard.image.MappedImage;
+import com.tylerpackard.image.PixelStore;
+import com.tylerpackard.image.PixelStoreImage;
+import com.tylerpackard.image.TiledImage;
+import com.tylerpackard.metrics.PerformanceStats;
 import com.tylerpackard.toolbox.colorchooser.ColorChooser;
 import com.tylerpackard.toolbox.toolchooser.ToolChooser;
 import com.tylerpackard.ui.dialogs.NewFileDialog;
@@ -26,7 +34,7 @@ import static com.apple.eawt.FullScreenUtilities.*;
  * Window.
  *
  * @author Tyler Packard
- * @version 1
+ * @version 3
  * @since 0.0.1
  * @see JComponent
  * @see JFrame
@@ -44,12 +52,6 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 	 */
 	private ArrayList<Updatable> updatables = new ArrayList<>();
 
-	/**
-	 * Whether or not the window has been resized and not yet repositioned
-	 * @see #reposition()
-	 */
-	private boolean resized = true;
-
 	/**
 	 * The JFrame that contains the JComponent part of the Window
 	 */
@@ -84,11 +86,18 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 	 */
 	public Boolean hasRetina = null;
 
+	/**
+	 * How fast painting, tools and the rest of the editor are running
+	 */
+	private final PerformanceStats performanceStats = new PerformanceStats();
+
 	/**
 	* Creates a new Window object with the specified height and width and puts it in its own JFrame. It creates and
 	* adds a new ColorChooser, ToolChooser, and Canvas to itself and also creates its own EditManager and NewFileDialog.
 	* It adds a component and fullscreen listener and enables the capability to go fullscreen on Macs. It also binds
-	* many keys to various shortcuts for file I/O, editing, and zooming.
+	* many keys to various shortcuts for file I/O, editing, and zooming. Finally, it lays out its components, offers to
+	* recover any unsaved changes left behind by a crash, and otherwise starts a recovery journal for the blank image.
+	* It must be created on the event dispatch thread.
 	*
 	* @param width	Specifies the starting width of the window
 	* @param height	Specifies the starting height of the window
@@ -142,9 +151,34 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 			getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(num), "zoom" + num);
 			getActionMap().put("zoom" + num, new Zoom(canvas, i));
 		}
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("meta pressed MINUS"), "zoom-out");
+		getActionMap().put("zoom-out", new ZoomBy(canvas, -1));
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("meta pressed EQUALS"), "zoom-in");
+		getActionMap().put("zoom-in", new ZoomBy(canvas, 1));
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("pressed SPACE"), "start-panning");
+		getActionMap().put("start-panning", new Pan(canvas, true));
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("released SPACE"), "stop-panning");
+		getActionMap().put("stop-panning", new Pan(canvas, false));
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("meta alt pressed I"), "toggle-hud");
+		getActionMap().put("toggle-hud", new ToggleHud(canvas));
+
+		reposition();
+		if (!recover()) {
+			startJournal(null);
+		}
 	}
 
 
+	/**
+	 * Returns the window's PerformanceStats, where the Canvas, tools and ColorChooser record how long they take
+	 *
+	 * @see PerformanceStats
+	 * @return The window's PerformanceStats
+	 */
+	public PerformanceStats getPerformanceStats() {
+		return performanceStats;
+	}
+
 	/**
 	 * Returns the window's EditManager
 	 *
@@ -155,6 +189,95 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 		return editManager;
 	}
 
+	/**
+	 * Returns the window's Canvas
+	 *
+	 * @return The window's Canvas
+	 */
+	public Canvas getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * Replaces the image being edited with a new document, forgetting the old document's history and starting a new
+	 * recovery journal.
+	 *
+	 * @param image The image of the new document
+	 * @param base The file the image was opened from, or null if it's new
+	 */
+	public void newDocument(PixelStore image, File base) {
+		canvas.setImage(image);
+		frame.setTitle(base == null ? "Untitled" : base.getName());
+		startJournal(base);
+	}
+
+	/**
+	 * Checks that an image isn't too big to be edited, and tells the user if it is.
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return Whether or not the image can be edited
+	 * @see DrawEdit#MAX_SIZE
+	 */
+	public boolean checkSize(int width, int height) {
+		if (width <= DrawEdit.MAX_SIZE && height <= DrawEdit.MAX_SIZE) {
+			return true;
+		}
+		JOptionPane.showMessageDialog(frame, "Images can be at most " + DrawEdit.MAX_SIZE + " pixels wide and tall.",
+				"Image Too Big", JOptionPane.ERROR_MESSAGE);
+		return false;
+	}
+
+	/**
+	 * Starts a new recovery journal for the image being edited. If the journal can't be created, the document just
+	 * isn't journaled.
+	 *
+	 * @param base The file the image was opened from, or null if it's new
+	 */
+	private void startJournal(File base) {
+		PixelStore image = canvas.getImage();
+		try {
+			editManager.reset(new RecoveryJournal(base, image.getWidth(), image.getHeight(), image instanceof MappedImage));
+		} catch (IOException e) {
+			e.printStackTrace();
+			editManager.reset(null);
+		}
+	}
+
+	/**
+	 * Looks for changes left unsaved by earlier runs, whether they crashed or were quit without saving, and asks
+	 * the user about each document in turn, newest first, until one is recovered. A recovered document is rebuilt from
+	 * its last saved image and the journal, which carries on being used, along with its history, so the recovered
+	 * changes can still be undone. Journals the user turns down are deleted, and any after the recovered one are kept
+	 * to be asked about next time.
+	 *
+	 * @return Whether or not a document was recovered
+	 */
+	private boolean recover() {
+		for (File file : RecoveryJournal.findJournals()) {
+			int option = JOptionPane.showConfirmDialog(frame, "There are unsaved changes to "
+					+ RecoveryJournal.describe(file) + " from an earlier time the editor was open. Recover them?",
+					"Recover Changes", JOptionPane.YES_NO_OPTION);
+			if (option != JOptionPane.YES_OPTION) {
+				file.delete();
+				continue;
+			}
+
+			try {
+				RecoveryJournal journal = RecoveryJournal.resume(file);
+				canvas.setImage(journal.getRecoveredImage());
+				frame.setTitle(journal.getBase() == null ? "Untitled" : journal.getBase().getName());
+				editManager.recover(journal);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(frame, "The changes couldn't be recovered.", "Recover Changes",
+						JOptionPane.ERROR_MESSAGE);
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Returns the JFrame containing the Window
 	 *
@@ -275,21 +398,6 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 		return component;
 	}
 
-	/**
-	 * Updates all child updatables and if the Window has been resized, then it's repositioned()
-	 *
-	 * @see Updatable
-	 * @see #reposition()
-	 */
-	public void update() {
-		for (Updatable updatable : updatables) {
-			updatable.update();
-		}
-		if (resized) {
-			reposition();
-		}
-	}
-
 	/**
 	 * Resizes the JComponent and all child Updatables
 	 */
@@ -298,7 +406,6 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 		for (Updatable updatable : updatables) {
 			updatable.reposition();
 		}
-		resized = false;
 	}
 
 	/**
@@ -382,13 +489,13 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 	/** Component Listener **/
 
 	/**
-	 * Notifies the program when the JFrame is resized
+	 * Repositions the Window's components when the JFrame is resized
 	 *
 	 * @param e The component event
 	 */
 	@Override
 	public void componentResized(ComponentEvent e) {
-		resized = true;
+		reposition();
 	}
 
 	/**
@@ -444,8 +551,12 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 
 	/**
 	 * Called by the save action. It displays a JFileChooser that lets the user
-	 * specify a location to save the image. Then it creates a new File containing the child Canvas' image and saves it to
-	 * the location specified by the user, if it's valid.
+	 * specify a location to save the image. Then it takes a snapshot of the child Canvas' image and saves it to the
+	 * location specified by the user, if it's valid. The snapshot either shares its pixels with the image or is copied
+	 * in the background, so it's cheap to take, and it's written on a separate thread so the user can keep drawing
+	 * while it's saved. It's written straight out of the snapshot a part at a time, so it never has to fit on the heap
+	 * all at once. Once it's saved, the recovery journal drops the changes made before the snapshot, since they're in
+	 * the saved file now.
 	 *
 	 * @see JFileChooser
 	 * @see ImageIO#write(java.awt.image.RenderedImage, String, File)
@@ -461,13 +572,23 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 			int i = file.getName().lastIndexOf('.');
 			if (i > 0) {
 				extension = file.getName().substring(i + 1);
-
-				try {
-					ImageIO.write(canvas.getImage(), extension, file);
-					frame.setTitle(file.getName());
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				editManager.seal();
+				RecoveryJournal journal = editManager.getRecoveryJournal();
+				int mark = journal == null ? 0 : journal.mark();
+				PixelStore snapshot = canvas.getImage().snapshot();
+
+				new Thread(() -> {
+					try {
+						if (ImageIO.write(new PixelStoreImage(snapshot), extension, file) && journal != null) {
+							journal.saved(file, mark);
+						}
+						SwingUtilities.invokeLater(() -> frame.setTitle(file.getName()));
+					} catch (IOException e) {
+						e.printStackTrace();
+					} finally {
+						snapshot.release();
+					}
+				}, "Save").start();
 			}
 		}
 	}
@@ -504,8 +625,10 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 		if (option == JFileChooser.APPROVE_OPTION) {
 			file = fileChooser.getSelectedFile();
 			try {
-				canvas.setImage(ImageIO.read(file));
-				frame.setTitle(file.getName());
+				BufferedImage image = ImageIO.read(file);
+				if (checkSize(image.getWidth(), image.getHeight())) {
+					newDocument(TiledImage.fromImage(image), file);
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -568,6 +691,59 @@ public class Window extends JComponent implements FullScreenListener, ComponentL
 		}
 	}
 
+	/**
+	 * An action that zooms the Canvas in or out by some number of levels from where it is, which is the only way to
+	 * reach the levels below 100%.
+	 */
+	private static class ZoomBy extends AbstractAction {
+		private Canvas canvas;
+		private int levels;
+
+		public ZoomBy(Canvas canvas, int levels) {
+			this.canvas = canvas;
+			this.levels = levels;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			canvas.zoomBy(levels);
+		}
+	}
+
+	/**
+	 * An action that turns panning with the mouse on when the space bar is pressed, and off when it's released.
+	 */
+	private static class Pan extends AbstractAction {
+		private Canvas canvas;
+		private boolean panning;
+
+		public Pan(Canvas canvas, boolean panning) {
+			this.canvas = canvas;
+			this.panning = panning;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			canvas.setPanning(panning);
+		}
+	}
+
+	/**
+	 * An action that shows or hides the performance HUD in the corner of the Canvas.
+	 */
+	private static class ToggleHud extends AbstractAction {
+		private Canvas canvas;
+
+		public ToggleHud(Canvas canvas) {
+			this.canvas = canvas;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			canvas.toggleHud();
+		}
+	}
+
 	/**
 	 * An action that switches to the previous zoom level in the Canvas when the user uses a new shortcut.
 	 */
@@ -1,16 +1,19 @@
 package com.tylerpackard.ui.dialogs;
 
 import com.tylerpackard.canvas.Canvas;
+import com.tylerpackard.image.MappedImage;
+import com.tylerpackard.image.TiledImage;
 import com.tylerpackard.ui.TextField;
 import com.tylerpackard.ui.Window;
 
 import javax.swing.*;
 import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 /**
- * The dialog for creating new images. It allows the user to specify a height and width for a new image.
- * After creation, the image on the canvas is replaced by a blank one with the specified dimensions.
+ * The dialog for creating new images. It allows the user to specify a height and width for a new image, and whether
+ * its pixels should be kept on disk. After creation, the image on the canvas is replaced by a blank one with the
+ * specified dimensions.
  *
  * @author Tyler Packard
  * @version 1
@@ -27,6 +30,13 @@ public class NewFileDialog extends JDialog {
 	private final TextField widthField = new TextField("100", TextField.NUMS_ONLY);
 	private final TextField heightField = new TextField("100", TextField.NUMS_ONLY);
 
+	/**
+	 * The checkbox that lets the user keep the image's pixels in a memory-mapped file instead of in memory, for images
+	 * too large to fit in the heap.
+	 * @see MappedImage
+	 */
+	private final JCheckBox mappedBox = new JCheckBox("Keep pixels on disk");
+
 	/**
 	 * The parent of the dialog on which the dialog should be centered
 	 */
@@ -49,7 +59,7 @@ public class NewFileDialog extends JDialog {
 	public NewFileDialog(Window parent) {
 		super(parent.getFrame(), "New File", true);
 		this.parent = parent;
-		setSize(270, 110);
+		setSize(270, 135);
 		setResizable(false);
 		setVisible(false);
 		requestFocus();
@@ -61,6 +71,7 @@ public class NewFileDialog extends JDialog {
 		JLabel heightLabel = new JLabel("Height");
 		add(heightLabel);
 		add(heightField);
+		add(mappedBox);
 		JButton createButton = new JButton("Create");
 		add(createButton);
 		JButton cancelButton = new JButton("Cancel");
@@ -70,12 +81,26 @@ public class NewFileDialog extends JDialog {
 		widthField.setBounds(60, 15, 50, 20);
 		heightLabel.setBounds(159, 15, 42, 20);
 		heightField.setBounds(205, 15, 50, 20);
-		createButton.setBounds(155, 50, 70, 25);
-		cancelButton.setBounds(45, 50, 70, 25);
+		mappedBox.setBounds(11, 45, 200, 20);
+		createButton.setBounds(155, 75, 70, 25);
+		cancelButton.setBounds(45, 75, 70, 25);
 
 		ActionListener createAction = e -> {
 			setVisible(false);
-			canvas.setImage(new BufferedImage(Integer.parseInt(widthField.getText()), Integer.parseInt(heightField.getText()), BufferedImage.TYPE_INT_ARGB));
+			int width = Integer.parseInt(widthField.getText());
+			int height = Integer.parseInt(heightField.getText());
+			if (!parent.checkSize(width, height)) {
+				return;
+			}
+			if (mappedBox.isSelected()) {
+				try {
+					parent.newDocument(new MappedImage(width, height), null);
+					return;
+				} catch (IOException ex) {
+					ex.printStackTrace();
+				}
+			}
+			parent.newDocument(new TiledImage(width, height), null);
 		};
 		widthField.addActionListener(createAction);
 		heightField.addActionListener(createAction);